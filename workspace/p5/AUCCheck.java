@@ -0,0 +1,89 @@
+import java.util.Random;
+
+/*
+ * AUCCheck.java
+ * Copyright (c) 2018 Georgetown University.  All Rights Reserved.
+ */
+
+public class AUCCheck {
+	// scores drawn for the tie-heavy checks, including signed zeros and NaN
+	private static final double[] TIED_SCORES = { -0.0, 0.0, 0.1, 0.25, 0.25, 0.5, 0.75, 1.0, Double.NaN };
+
+	/**
+	 * Builds a two-class Performance whose predictions of class 0 and class 1 carry the given scores
+	 * @param attributes - attributes with a two-valued class
+	 * @param pos - scores of the predictions of class 0
+	 * @param neg - scores of the predictions of class 1; NaN cannot be predicted as class 1
+	 * @return the performance
+	 * @throws Exception
+	 */
+	private static Performance build( Attributes attributes, double[] pos, double[] neg ) throws Exception {
+		Performance performance = new Performance( attributes );
+		for(int i = 0; i < pos.length; i++) {
+			// NaN in the second slot never wins, so class 0 is predicted
+			performance.add( i % 2, new double[] { pos[ i ], Double.NaN } );
+		}
+		for(int i = 0; i < neg.length; i++) {
+			performance.add( i % 2, new double[] { Double.NEGATIVE_INFINITY, neg[ i ] } );
+		}
+		return performance;
+	}
+	/**
+	 * Compares getAUC with the pairwise reference on random tie-heavy score sets, then times both
+	 * @param args - [trials] [size of the timed score sets]
+	 */
+	public static void main( String[] args ) {
+		try {
+			int trials = ( args.length > 0 ) ? Integer.parseInt( args[ 0 ] ) : 300;
+			int size = ( args.length > 1 ) ? Integer.parseInt( args[ 1 ] ) : 20000;
+			Attributes attributes = new Attributes();
+			NominalAttribute classAttribute = new NominalAttribute( "class" );
+			classAttribute.addValue( "no" );
+			classAttribute.addValue( "yes" );
+			attributes.add( classAttribute );
+			attributes.setClassIndex( 0 );
+			Random random = new Random( 1 );
+			int mismatches = 0;
+			for(int t = 0; t < trials; t++) {
+				double[] pos = new double[ random.nextInt( 50 ) ];
+				double[] neg = new double[ random.nextInt( 50 ) ];
+				for(int i = 0; i < pos.length; i++) {
+					pos[ i ] = TIED_SCORES[ random.nextInt( TIED_SCORES.length ) ];
+				}
+				for(int i = 0; i < neg.length; i++) {
+					// NaN cannot be the winning score of class 1
+					neg[ i ] = TIED_SCORES[ random.nextInt( TIED_SCORES.length - 1 ) ];
+				}
+				Performance performance = build( attributes, pos, neg );
+				if( Double.doubleToLongBits( performance.getAUC() ) != Double.doubleToLongBits( performance.getPairwiseAUC() ) ) {
+					mismatches++;
+					System.out.println( "mismatch: AUC = " + performance.getAUC() + ", pairwise AUC = " + performance.getPairwiseAUC() );
+				}
+			}
+			System.out.println( trials + " tie-heavy score sets, " + mismatches + " mismatches" );
+			// time both on continuous scores
+			double[] pos = new double[ size ];
+			double[] neg = new double[ size ];
+			for(int i = 0; i < size; i++) {
+				pos[ i ] = random.nextDouble();
+				neg[ i ] = random.nextDouble() * 0.9;
+			}
+			Performance performance = build( attributes, pos, neg );
+			long start = System.nanoTime();
+			double auc = performance.getAUC();
+			long sorted = System.nanoTime() - start;
+			start = System.nanoTime();
+			double pairwise = performance.getPairwiseAUC();
+			long quadratic = System.nanoTime() - start;
+			System.out.println( 2 * size + " predictions: getAUC = " + auc + " in " + sorted / 1000000 + "ms, pairwise = " + pairwise + " in " + quadratic / 1000000 + "ms" );
+			if( mismatches > 0 || Double.doubleToLongBits( auc ) != Double.doubleToLongBits( pairwise ) ) {
+				System.exit( 1 );
+			}
+		} // try
+		catch ( Exception e ) {
+			System.out.println( e.getMessage() );
+			e.printStackTrace();
+			System.exit( 1 );
+		} // catch
+	} // AUCCheck::main
+}
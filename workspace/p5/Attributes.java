@@ -11,7 +11,7 @@ public class Attributes {
 	private ArrayList<Attribute> attributes = new ArrayList<Attribute>();	// a list of attributes
 	private boolean hasNumericAttributes = false;	// a flag indicating that the data set has one or more numeric attributes
 	private int classIndex;	// stores the position of the class label
-	private ArrayList< ArrayList< Double[] > > encodedAttrs = new ArrayList< ArrayList< Double[] > >();
+	private volatile ArrayList< ArrayList< Double[] > > encodedAttrs = new ArrayList< ArrayList< Double[] > >();
 	/*
 	 * Default constructor.
 	 */
@@ -128,7 +128,9 @@ public class Attributes {
 	 * @param isBipolar
 	 */
 	public void encode( boolean isBipolar ) {
-		this.encodedAttrs = new ArrayList< ArrayList< Double[] > >();
+		// build the encoding aside and publish it at the end, since classifiers trained on
+		// concurrent folds share this object
+		ArrayList< ArrayList< Double[] > > encodedAttrs = new ArrayList< ArrayList< Double[] > >();
 		// perform encoding for the values
 		double[] vals = new double[ 2 ];
 		vals[ 0 ] = ( isBipolar ) ? -1.0 : 0.0;
@@ -159,8 +161,9 @@ public class Attributes {
 				}
 			}
 			
-			this.encodedAttrs.add( attrVals );
+			encodedAttrs.add( attrVals );
 		}
+		this.encodedAttrs = encodedAttrs;
 	}
 	/**
 	 * Getter method for encodedAttrs
@@ -0,0 +1,292 @@
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/*
+ * BinaryDataSetFormat.java
+ * Copyright (c) 2018 Georgetown University.  All Rights Reserved.
+ *
+ * Layout: magic, version, header length, header (source size and mtime, name, attributes with their
+ * nominal domains, class index, number of examples), then one block per attribute column. Numeric
+ * columns are stored as doubles; nominal columns as unsigned bytes, unsigned shorts, or ints,
+ * whichever is the smallest type that fits the attribute's domain.
+ */
+
+public class BinaryDataSetFormat {
+
+	public static final String CACHE_SUFFIX = ".cache";	// suffix of the sidecar cache file
+	private static final int MAGIC = 0x44534231;	// "DSB1"
+	private static final int VERSION = 1;
+	private static final byte NUMERIC = 0;
+	private static final byte NOMINAL = 1;
+
+	/**
+	 * Writes a given data-set to a file
+	 * @param dataset - the data-set to write
+	 * @param filename - the file to write to
+	 * @param sourceSize - size of the text file this data-set was loaded from, or 0
+	 * @param sourceModified - last-modified time of the text file this data-set was loaded from, or 0
+	 * @throws Exception - if the data-set is invalid or if the file cannot be written
+	 */
+	public static void save( DataSet dataset, String filename, long sourceSize, long sourceModified ) throws Exception {
+		if( dataset == null || dataset.getAttributes() == null || dataset.getAttributes().size() == 0 ) {
+			throw new Exception("Error: invalid DataSet object passed-in!");
+		}
+		Attributes attributes = dataset.getAttributes();
+		Examples examples = dataset.getExamples();
+		int numExs = ( examples == null ) ? 0 : examples.size();
+		// build the header first so that its length can be written ahead of it
+		ByteArrayOutputStream headerBytes = new ByteArrayOutputStream();
+		DataOutputStream header = new DataOutputStream( headerBytes );
+		header.writeLong( sourceSize );
+		header.writeLong( sourceModified );
+		header.writeBoolean( dataset.name != null );
+		header.writeUTF( ( dataset.name == null ) ? "" : dataset.name );
+		header.writeInt( attributes.size() );
+		for(int i = 0; i < attributes.size(); i++) {
+			Attribute attr = attributes.get( i );
+			header.writeUTF( attr.getName() );
+			if( attr instanceof NumericAttribute ) {
+				header.writeByte( NUMERIC );
+			}
+			else {
+				NominalAttribute nominal = (NominalAttribute) attr;
+				header.writeByte( NOMINAL );
+				header.writeInt( nominal.size() );
+				for(int j = 0; j < nominal.size(); j++) {
+					header.writeUTF( nominal.getValue( j ) );
+				}
+			}
+		}
+		header.writeInt( attributes.getClassIndex() );
+		header.writeBoolean( examples != null );
+		header.writeInt( numExs );
+		header.flush();
+
+		DataOutputStream out = null;
+		try {
+			out = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( filename ), 1 << 16 ) );
+			out.writeInt( MAGIC );
+			out.writeInt( VERSION );
+			out.writeInt( headerBytes.size() );
+			headerBytes.writeTo( out );
+			// write one block per column
+			for(int j = 0; j < attributes.size(); j++) {
+				int width = columnWidth( attributes.get( j ) );
+				for(int i = 0; i < numExs; i++) {
+					double value = examples.get( i ).getValue( j );
+					switch( width ) {
+						case 1: out.writeByte( (int) value ); break;
+						case 2: out.writeShort( (int) value ); break;
+						case 4: out.writeInt( (int) value ); break;
+						default: out.writeDouble( value );
+					}
+				}
+			}
+		}
+		finally {
+			if( out != null ) {
+				out.close();
+			}
+		}
+	}
+	/**
+	 * Reads a data-set written by save into a given data-set
+	 * @param dataset - the data-set to fill
+	 * @param filename - the file to read from
+	 * @throws Exception - if the file is not found or is not a valid binary data-set
+	 */
+	public static void load( DataSet dataset, String filename ) throws Exception {
+		if( dataset == null ) {
+			throw new Exception("Error: invalid DataSet object passed-in!");
+		}
+		RandomAccessFile file = null;
+		try {
+			file = new RandomAccessFile( filename, "r" );
+			int headerLength = readPreamble( file );
+			byte[] headerBytes = new byte[ headerLength ];
+			file.readFully( headerBytes );
+			DataInputStream header = new DataInputStream( new ByteArrayInputStream( headerBytes ) );
+			header.readLong();	// source size
+			header.readLong();	// source last-modified time
+			boolean hasName = header.readBoolean();
+			String name = header.readUTF();
+			dataset.name = hasName ? name : null;
+			Attributes attributes = new Attributes();
+			int numAttrs = header.readInt();
+			for(int i = 0; i < numAttrs; i++) {
+				String attrName = header.readUTF();
+				if( header.readByte() == NUMERIC ) {
+					attributes.add( new NumericAttribute( attrName ) );
+				}
+				else {
+					NominalAttribute nominal = new NominalAttribute( attrName );
+					int domainSize = header.readInt();
+					for(int j = 0; j < domainSize; j++) {
+						nominal.addValue( header.readUTF() );
+					}
+					attributes.add( nominal );
+				}
+			}
+			attributes.setClassIndex( header.readInt() );
+			boolean hasExamples = header.readBoolean();
+			int numExs = header.readInt();
+			dataset.attributes = attributes;
+			dataset.examples = null;
+			if( !hasExamples ) {
+				return;
+			}
+			// map every column block and decode it into a column with one bulk read
+			FileChannel channel = file.getChannel();
+			Object[] columns = new Object[ numAttrs ];
+			long position = 12L + headerLength;
+			for(int j = 0; j < numAttrs; j++) {
+				int width = columnWidth( attributes.get( j ) );
+				long length = (long) width * numExs;
+				if( length > Integer.MAX_VALUE ) {
+					throw new Exception("Error: column is too large to be mapped!");
+				}
+				MappedByteBuffer block = channel.map( FileChannel.MapMode.READ_ONLY, position, length );
+				position += length;
+				if( width == 8 ) {
+					double[] values = new double[ numExs ];
+					block.asDoubleBuffer().get( values );
+					columns[ j ] = values;
+					continue;
+				}
+				int[] values = new int[ numExs ];
+				if( width == 4 ) {
+					block.asIntBuffer().get( values );
+				}
+				else if( width == 2 ) {
+					short[] packed = new short[ numExs ];
+					block.asShortBuffer().get( packed );
+					for(int i = 0; i < numExs; i++) {
+						values[ i ] = packed[ i ] & 0xffff;
+					}
+				}
+				else {
+					byte[] packed = new byte[ numExs ];
+					block.get( packed );
+					for(int i = 0; i < numExs; i++) {
+						values[ i ] = packed[ i ] & 0xff;
+					}
+				}
+				columns[ j ] = values;
+			}
+			// the rows are still built, since every classifier reads examples row by row
+			dataset.examples = new Examples( attributes, columns, numExs );
+		}
+		finally {
+			if( file != null ) {
+				file.close();
+			}
+		}
+	}
+	/**
+	 * Loads a text data-set through its sidecar cache. The cache is used when its recorded source size
+	 * and last-modified time match the text file; otherwise the text file is parsed and the cache is rewritten.
+	 * @param dataset - the data-set to fill
+	 * @param filename - the text file
+	 * @param threads - the number of threads parsing the text file
+	 * @throws Exception - if the file is not found or if a parsing exception occurs
+	 */
+	public static void loadCached( DataSet dataset, String filename, int threads ) throws Exception {
+		File source = new File( filename );
+		File cache = new File( filename + CACHE_SUFFIX );
+		long sourceSize = source.length();
+		long sourceModified = source.lastModified();
+		if( source.isFile() && cache.isFile() && isCurrent( cache, sourceSize, sourceModified ) ) {
+			try {
+				load( dataset, cache.getPath() );
+				return;
+			}
+			catch( Exception e ) {
+				System.err.println("Warning: ignoring unreadable data-set cache " + cache.getPath());
+			}
+		}
+		// never cache a failed or partial parse; it would be served as the whole file later
+		if( !dataset.load( filename, threads ) || dataset.getExamples() == null || !source.isFile() ) {
+			return;
+		}
+		// write to a temporary file of its own first, so that concurrent runs never write into the same file
+		// and never see a partial cache
+		File tmp = null;
+		try {
+			File directory = cache.getAbsoluteFile().getParentFile();
+			tmp = Files.createTempFile( directory.toPath(), cache.getName(), ".tmp" ).toFile();
+			save( dataset, tmp.getPath(), sourceSize, sourceModified );
+			Files.move( tmp.toPath(), cache.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+			tmp = null;
+		}
+		catch( Exception e ) {
+			System.err.println("Warning: could not write data-set cache " + cache.getPath());
+		}
+		finally {
+			if( tmp != null ) {
+				tmp.delete();
+			}
+		}
+	}
+	/**
+	 * Checks if a given cache file was written for a source of the given size and last-modified time
+	 * @param cache
+	 * @param sourceSize
+	 * @param sourceModified
+	 * @return true if the cache is current, false otherwise
+	 */
+	private static boolean isCurrent( File cache, long sourceSize, long sourceModified ) {
+		RandomAccessFile file = null;
+		try {
+			file = new RandomAccessFile( cache, "r" );
+			readPreamble( file );
+			return file.readLong() == sourceSize && file.readLong() == sourceModified;
+		}
+		catch( Exception e ) {
+			return false;
+		}
+		finally {
+			if( file != null ) {
+				try {
+					file.close();
+				}
+				catch( Exception e ) {
+					// nothing to do
+				}
+			}
+		}
+	}
+	/**
+	 * Reads and validates the magic number and version, and returns the header length
+	 * @param file
+	 * @return length of the header in bytes
+	 * @throws Exception - if the file is not a binary data-set of this version
+	 */
+	private static int readPreamble( RandomAccessFile file ) throws Exception {
+		if( file.readInt() != MAGIC || file.readInt() != VERSION ) {
+			throw new Exception("Error: not a binary data-set file!");
+		}
+		return file.readInt();
+	}
+	/**
+	 * Returns the number of bytes used to store one value of a given attribute
+	 * @param attr
+	 * @return 1, 2 or 4 for nominal attributes, 8 for numeric attributes
+	 */
+	private static int columnWidth( Attribute attr ) {
+		if( attr instanceof NumericAttribute ) {
+			return 8;
+		}
+		int size = attr.size();
+		return ( size <= 256 ) ? 1 : ( ( size <= 65536 ) ? 2 : 4 );
+	}
+}
@@ -31,11 +31,52 @@ public class CategoricalEstimator extends Estimator implements Serializable {
 	 * @param x
 	 */
 	public void add( Number x ) throws Exception {
+		this.add( x.doubleValue() );
+	}
+	/**
+	 * Adds one to category
+	 * @param x
+	 */
+	public void add( double x ) throws Exception {
 		// increment values
 		this.n++;
 		// add 1 to this class value
-		int newVal = this.dist.get( x.intValue() ) + 1;
-		this.dist.set( x.intValue(), newVal );
+		int newVal = this.dist.get( (int) x ) + 1;
+		this.dist.set( (int) x, newVal );
+	}
+	/**
+	 * Subtracts one from category
+	 * @param x
+	 */
+	public void remove( Number x ) throws Exception {
+		this.remove( x.doubleValue() );
+	}
+	/**
+	 * Subtracts one from category
+	 * @param x
+	 */
+	public void remove( double x ) throws Exception {
+		int count = this.dist.get( (int) x );
+		if( count == 0 ) {
+			throw new Exception("Error: no sample of category " + (int) x + " to remove!");
+		}
+		this.n--;
+		this.dist.set( (int) x, count - 1 );
+	}
+	/**
+	 * Adds the category counts of another categorical estimator over the same categories
+	 * @param other
+	 * @throws Exception
+	 */
+	public void merge( Estimator other ) throws Exception {
+		if( !( other instanceof CategoricalEstimator ) || ( (CategoricalEstimator) other ).dist.size() != this.dist.size() ) {
+			throw new Exception("Error: incompatible Estimator object passed-in!");
+		}
+		ArrayList<Integer> otherDist = ( (CategoricalEstimator) other ).dist;
+		for(int i = 0; i < this.dist.size(); i++) {
+			this.dist.set( i, this.dist.get( i ) + otherDist.get( i ) );
+		}
+		this.n += other.n;
 	}
 	/**
 	 * Computes probability and return its value; this method uses add-one smoothing
@@ -43,7 +84,15 @@ public class CategoricalEstimator extends Estimator implements Serializable {
 	 * @return probability
 	 */
 	public Double getProbability( Number x ) {
-		double smoothed = this.dist.get( x.intValue() ) + 1; // add one smoothing
+		return this.getProbability( x.doubleValue() );
+	}
+	/**
+	 * Computes probability and return its value; this method uses add-one smoothing
+	 * @param x
+	 * @return probability
+	 */
+	public double getProbability( double x ) {
+		double smoothed = this.dist.get( (int) x ) + 1; // add one smoothing
 		double total = this.n + this.dist.size();
 		return smoothed / total ;
 	}
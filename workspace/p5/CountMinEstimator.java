@@ -0,0 +1,124 @@
+import java.io.Serializable;
+
+/*
+ * CountMinEstimator.java
+ * Copyright (c) 2018 Georgetown University.  All Rights Reserved.
+ */
+
+public class CountMinEstimator extends Estimator implements Serializable {
+	protected static final int DEPTH = 4;	// number of hashed rows
+	protected int size;			// number of categories, for add-one smoothing
+	protected int width;		// counters per row
+	protected int[] table;		// [row * width + column] counters
+
+	/**
+	 * Constructor
+	 * @param size - number of categories
+	 * @param width - counters per row; memory is DEPTH * width counters however large size is
+	 */
+	public CountMinEstimator( int size, int width ) {
+		this.size = size;
+		this.width = Math.max( 1, width );
+		this.table = new int[ DEPTH * this.width ];
+	}
+	/**
+	 * Adds one to category
+	 * @param x
+	 */
+	public void add( Number x ) throws Exception {
+		this.add( x.doubleValue() );
+	}
+	/**
+	 * Adds one to category with the conservative update: only the counters holding the current estimate are
+	 * raised, which keeps collisions from inflating the other counters
+	 * @param x
+	 */
+	public void add( double x ) throws Exception {
+		int category = this.check( x );
+		int estimate = this.getCount( category );
+		for(int row = 0; row < DEPTH; row++) {
+			int idx = row * this.width + this.column( row, category );
+			if( this.table[ idx ] <= estimate ) {
+				this.table[ idx ] = estimate + 1;
+			}
+		}
+		this.n++;
+	}
+	/**
+	 * Removing is not supported: after conservative updates, no counter is known to include a given sample
+	 * @param x
+	 */
+	public void remove( Number x ) throws Exception {
+		throw new Exception("Error: a count-min sketch with conservative update cannot remove samples!");
+	}
+	/**
+	 * Adds the counters of another sketch of the same shape; every merged counter still bounds the true count
+	 * of its categories from above
+	 * @param other
+	 * @throws Exception
+	 */
+	public void merge( Estimator other ) throws Exception {
+		if( !( other instanceof CountMinEstimator ) || ( (CountMinEstimator) other ).width != this.width ||
+				( (CountMinEstimator) other ).size != this.size ) {
+			throw new Exception("Error: incompatible Estimator object passed-in!");
+		}
+		int[] otherTable = ( (CountMinEstimator) other ).table;
+		for(int i = 0; i < this.table.length; i++) {
+			this.table[ i ] += otherTable[ i ];
+		}
+		this.n += other.n;
+	}
+	/**
+	 * Returns the estimated count of a category, the smallest of its counters; it is never below the true count
+	 * @param category
+	 * @return estimated count
+	 */
+	public int getCount( int category ) {
+		int estimate = Integer.MAX_VALUE;
+		for(int row = 0; row < DEPTH; row++) {
+			estimate = Math.min( estimate, this.table[ row * this.width + this.column( row, category ) ] );
+		}
+		return estimate;
+	}
+	/**
+	 * Computes probability and return its value; this method uses add-one smoothing on the estimated count
+	 * @param x
+	 * @return probability
+	 */
+	public Double getProbability( Number x ) {
+		return this.getProbability( x.doubleValue() );
+	}
+	/**
+	 * Computes probability and return its value; this method uses add-one smoothing on the estimated count
+	 * @param x
+	 * @return probability
+	 */
+	public double getProbability( double x ) {
+		double smoothed = this.getCount( (int) x ) + 1; // add one smoothing
+		double total = this.n + this.size;
+		return smoothed / total;
+	}
+	/**
+	 * Returns the column of a category in a row; the rows use independent hashes of the category
+	 * @param row
+	 * @param category
+	 * @return column
+	 */
+	private int column( int row, int category ) {
+		long hash = LSHSearch.mix( ( category + 1L ) * 0x9e3779b97f4a7c15L + row );
+		return (int) Long.remainderUnsigned( hash, this.width );
+	}
+	/**
+	 * Validates a category
+	 * @param x
+	 * @return the category as an index
+	 * @throws Exception
+	 */
+	private int check( double x ) throws Exception {
+		int category = (int) x;
+		if( category < 0 || category >= this.size ) {
+			throw new Exception("Error: invalid category " + x + "!");
+		}
+		return category;
+	}
+}
@@ -70,7 +70,8 @@ public class DataSet {
 		return this.attributes.getHasNumericAttributes();
 	}
 	/**
-	 * Loads a data set from the specified file.
+	 * Loads a data set from the specified file. The file is memory-mapped and
+	 * its examples are parsed directly from bytes by MappedDataSetLoader.
 	 * 
 	 * @param filename
 	 *            - the file from which to read
@@ -78,6 +79,79 @@ public class DataSet {
 	 *             - if the file is not found or if a parsing exception occurs
 	 */
 	public void load(String filename) throws Exception {
+		this.load(filename, 1);
+	}
+	/**
+	 * Loads a data set from the specified file, parsing the examples section
+	 * in newline-aligned chunks on the specified number of threads.
+	 * 
+	 * @param filename
+	 *            - the file from which to read
+	 * @param threads
+	 *            - the number of threads parsing the examples
+	 * @return true if the whole file was parsed; false if an error was reported
+	 *         and the data set holds only the examples read before it
+	 * @throws Exception
+	 *             - if the file is not found or if a parsing exception occurs
+	 */
+	public boolean load(String filename, int threads) throws Exception {
+		this.attributes = new Attributes();
+		try {
+			new MappedDataSetLoader(filename, threads).load(this);
+			return true;
+		}
+		catch(Exception e) {
+			System.err.println("Error while loading dataset");
+			e.printStackTrace();
+			return false;
+		}
+	}
+	/**
+	 * Loads a data set from the specified file through its binary sidecar cache,
+	 * which is rebuilt whenever the file's size or last-modified time changes.
+	 * 
+	 * @param filename
+	 *            - the file from which to read
+	 * @param threads
+	 *            - the number of threads parsing the examples
+	 * @throws Exception
+	 *             - if the file is not found or if a parsing exception occurs
+	 */
+	public void loadCached(String filename, int threads) throws Exception {
+		BinaryDataSetFormat.loadCached(this, filename, threads);
+	}
+	/**
+	 * Loads a data set from the specified binary file written by save.
+	 * 
+	 * @param filename
+	 *            - the file from which to read
+	 * @throws Exception
+	 *             - if the file is not found or is not a binary data set
+	 */
+	public void loadBinary(String filename) throws Exception {
+		BinaryDataSetFormat.load(this, filename);
+	}
+	/**
+	 * Saves this data set to the specified file in the binary columnar format.
+	 * 
+	 * @param filename
+	 *            - the file to write to
+	 * @throws Exception
+	 *             - if the file cannot be written
+	 */
+	public void save(String filename) throws Exception {
+		BinaryDataSetFormat.save(this, filename, 0, 0);
+	}
+	/**
+	 * Loads a data set from the specified file using a Scanner. This is slower
+	 * than load, but is kept as a reference implementation of the file format.
+	 * 
+	 * @param filename
+	 *            - the file from which to read
+	 * @throws Exception
+	 *             - if the file is not found or if a parsing exception occurs
+	 */
+	public void loadWithScanner(String filename) throws Exception {
 		this.attributes = new Attributes();
 		Scanner scanner = null;
 		try {
@@ -186,17 +260,27 @@ public class DataSet {
 		DataSet testSet = new DataSet( this.attributes );
 		testSet.name = this.name;
 		testSet.setFolds( this.folds );
-		// fill test and train data-sets
-		for(int i = 0; i < this.examples.size(); i++) {
+		// fill test and train data-sets with views of this data-set's examples
+		int numTest = 0;
+		for(int i = 0; i < this.partitions.length; i++) {
+			numTest += ( this.partitions[i] == p ) ? 1 : 0;
+		}
+		int[] testRows = new int[ numTest ];
+		int[] trainRows = new int[ this.partitions.length - numTest ];
+		int testIdx = 0;
+		int trainIdx = 0;
+		for(int i = 0; i < this.partitions.length; i++) {
 			if( this.partitions[i] == p ) {
 				// add this example to a test data-set
-				testSet.add( this.examples.get(i) );
+				testRows[ testIdx++ ] = i;
 			} 
 			else {
 				// add this example to a train data-set
-				trainSet.add( this.examples.get(i) );
+				trainRows[ trainIdx++ ] = i;
 			}
 		}
+		testSet.examples = new Examples( this.examples, testRows );
+		trainSet.examples = new Examples( this.examples, trainRows );
 		// create cvSets and update values
 		TrainTestSets cvSets = new TrainTestSets();
 		cvSets.setTestingSet( testSet );
@@ -253,19 +337,22 @@ public class DataSet {
 		// calculate Gain() and SplitInformation()
 		double gainTotal = 0;
 		double splitInfo = 0;
-		for(int i = 0; i < this.attributes.get( attribute ).size(); i++) {
-			// count this attribute in examples
-			double attrCnt = 0;
-			int[] attrClassCnts = new int[ classAttr.size() ];
-			for(int j = 0; j < attrClassCnts.length; j++) {
-				attrClassCnts[ j ] = 0;
-			}
-			for(int j = 0; j < this.examples.size(); j++) {
-				if( this.examples.get( j ).get( attribute ) == i ) {
-					attrCnt++;
-					attrClassCnts[ this.examples.get( j ).get( classIdx ).intValue() ]++;
-				}
+		// count every attribute value against every class in a single pass over the columns
+		int numValues = this.attributes.get( attribute ).size();
+		int[] attrColumn = this.examples.getNominalColumn( attribute );
+		int[] classColumn = this.examples.getNominalColumn( classIdx );
+		int[][] valueClassCnts = new int[ numValues ][ classAttr.size() ];
+		int[] valueCnts = new int[ numValues ];
+		for(int j = 0; j < attrColumn.length; j++) {
+			int value = attrColumn[ j ];
+			if( value >= 0 && value < numValues ) {
+				valueCnts[ value ]++;
+				valueClassCnts[ value ][ classColumn[ j ] ]++;
 			}
+		}
+		for(int i = 0; i < numValues; i++) {
+			double attrCnt = valueCnts[ i ];
+			int[] attrClassCnts = valueClassCnts[ i ];
 			if( attrCnt == 0 ) {
 				continue;
 			}
@@ -327,22 +414,35 @@ public class DataSet {
 		if( this.isEmpty() || this.attributes == null || this.attributes.size() == 0 || attribute < 0 || attribute >= this.attributes.size() || this.attributes.get( attribute ) instanceof NumericAttribute ) {
 			throw new Exception("Error: invalid attribute or data-set!");
 		}
+		// bucket the example positions by attribute value in one pass over the column
+		int numValues = this.attributes.get( attribute ).size();
+		int[] column = this.examples.getNominalColumn( attribute );
+		int[] valueCnts = new int[ numValues ];
+		for(int j = 0; j < column.length; j++) {
+			if( column[ j ] >= 0 && column[ j ] < numValues ) {
+				valueCnts[ column[ j ] ]++;
+			}
+		}
+		int[][] rows = new int[ numValues ][];
+		for(int i = 0; i < numValues; i++) {
+			rows[ i ] = new int[ valueCnts[ i ] ];
+			valueCnts[ i ] = 0;
+		}
+		for(int j = 0; j < column.length; j++) {
+			if( column[ j ] >= 0 && column[ j ] < numValues ) {
+				rows[ column[ j ] ][ valueCnts[ column[ j ] ]++ ] = j;
+			}
+		}
 		ArrayList<DataSet> dsList = new ArrayList<DataSet>();
-		for(int i = 0; i < this.attributes.get( attribute ).size(); i++) {
+		for(int i = 0; i < numValues; i++) {
 			// create a new DataSet for this attribute value
 			DataSet ds = new DataSet( this.attributes );
 			ds.name = this.name;
 			ds.random = this.random;
 			ds.folds = this.folds;
 			ds.partitions = this.partitions;
-			ds.examples = new Examples( this.attributes );
-			// update examples
-			for( Example ex : this.examples ) {
-				if( ex.get( attribute ) == i ) {
-					// if attribute values match; add this to ds.examples
-					ds.examples.add( ex );
-				}
-			}
+			// view of the examples whose attribute value matches
+			ds.examples = new Examples( this.examples, rows[ i ] );
 			dsList.add( ds );
 		}
 		return dsList;
@@ -359,9 +459,9 @@ public class DataSet {
 		}
 		// check if all examples have the same class label
 		int classIdx = this.attributes.getClassIndex();
-		double classLabel = this.examples.get( 0 ).get( classIdx );
+		double classLabel = this.examples.get( 0 ).getValue( classIdx );
 		for( int i = 1; i < this.examples.size(); i++ ) {
-			if( classLabel != this.examples.get( i ).get( classIdx ) ) {
+			if( classLabel != this.examples.get( i ).getValue( classIdx ) ) {
 				// if the class of the first example does not match with this example class; return false
 				return false;
 			}
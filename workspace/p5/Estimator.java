@@ -13,6 +13,12 @@ public abstract class Estimator extends Object {
 		
 	}
 	abstract public void add( Number x ) throws Exception;
+	/**
+	 * Removes a sample added before, as if it had never been added
+	 * @param x
+	 * @throws Exception
+	 */
+	abstract public void remove( Number x ) throws Exception;
 	/**
 	 * Returns n
 	 * @return n - number of samples
@@ -21,4 +27,34 @@ public abstract class Estimator extends Object {
 		return this.n;
 	}
 	abstract public Double getProbability( Number x );
+	/**
+	 * Adds the samples of another estimator of the same kind to this one, as if they had been added here
+	 * @param other
+	 * @throws Exception
+	 */
+	abstract public void merge( Estimator other ) throws Exception;
+	/**
+	 * Adds a primitive value; subclasses override this to avoid boxing
+	 * @param x
+	 * @throws Exception
+	 */
+	public void add( double x ) throws Exception {
+		this.add( (Number) x );
+	}
+	/**
+	 * Removes a primitive value; subclasses override this to avoid boxing
+	 * @param x
+	 * @throws Exception
+	 */
+	public void remove( double x ) throws Exception {
+		this.remove( (Number) x );
+	}
+	/**
+	 * Returns the probability of a primitive value; subclasses override this to avoid boxing
+	 * @param x
+	 * @return probability
+	 */
+	public double getProbability( double x ) {
+		return this.getProbability( (Number) x );
+	}
 }
\ No newline at end of file
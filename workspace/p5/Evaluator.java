@@ -2,6 +2,11 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /*
  * Evaluator.java
@@ -17,6 +22,9 @@ public class Evaluator implements OptionHandler {
 	private Classifier classifier;
 	private TrainTestSets tts;
 	private Scaler scaler;
+	private int threads = 1;	// number of folds evaluated concurrently
+	private int kMax = 0;		// if positive, evaluate IBk with every k up to kMax from one neighbor search
+	private Performance[] performances = null;	// performance of each k when kMax is set
 
 	/**
 	 * Default constructor
@@ -84,19 +92,20 @@ public class Evaluator implements OptionHandler {
 			// check if hold-out value is passed-in
 			if( this.holdouts == null ) {
 				// use k-fold method
-				double totalAUC = 0;
-				for(int i = 0; i < this.folds; i++) {
-					Classifier classifier = this.classifier.clone();
-					// cross-validate each bin
-					TrainTestSets cvSets = trainSet.getCVSets( i );
-					// train with current train data-set
-					classifier.train( cvSets.getTrainingSet() );
-					// add current performance (tested with the current test data-set)
-					perform.add( classifier.classify( cvSets.getTestingSet() ) );
-					totalAUC += perform.getAccuracy();
+				Performance[][] foldPerforms = this.evaluateFolds( trainSet );
+				Performance[] performs = new Performance[ foldPerforms[ 0 ].length ];
+				for(int j = 0; j < performs.length; j++) {
+					performs[ j ] = new Performance( trainSet.getAttributes() );
+					double totalAUC = 0;
+					for(int i = 0; i < this.folds; i++) {
+						// add current performance (tested with the current test data-set)
+						performs[ j ].add( foldPerforms[ i ][ j ] );
+						totalAUC += performs[ j ].getAccuracy();
+					}
+					// take the average and set this value as AUC
+					performs[ j ].setAvgAUC( totalAUC / this.folds );
 				}
-				// take the average and set this value as AUC
-				perform.setAvgAUC( totalAUC / this.folds );
+				perform = this.select( performs );
 			}
 			else {
 				// use hold-out method
@@ -123,19 +132,131 @@ public class Evaluator implements OptionHandler {
 				// train using newTrainSet
 				this.classifier.train( newTrainSet );
 				// compute performance using newTestSet
-				perform = this.classifier.classify( newTestSet );
+				perform = this.select( this.test( this.classifier, newTestSet ) );
 			}
 		}
 		else {
 			// both train and test data-sets are provided
 			this.classifier.train( trainSet );
-			perform = this.classifier.classify( testSet );
+			perform = this.select( this.test( this.classifier, testSet ) );
 		}
 		if( perform == null ) {
 			throw new Exception("Error: Performance is still not set!");
 		}
 		return perform;
 	}
+	/**
+	 * Trains and tests a clone of the classifier on every fold and returns the performances in fold
+	 * order; a naive Bayes classifier is trained once and copied with each fold removed (see trainFold),
+	 * unless it counts in sketches that cannot remove examples.
+	 * Folds run on a bounded thread pool when more than one thread is requested; the folds and clones
+	 * are prepared up front so that the results do not depend on the number of threads.
+	 * @param trainSet - the data-set to cross-validate
+	 * @return performances of each fold, as returned by test
+	 * @throws Exception
+	 */
+	private Performance[][] evaluateFolds( DataSet trainSet ) throws Exception {
+		final Classifier[] classifiers = new Classifier[ this.folds ];
+		final TrainTestSets[] cvSets = new TrainTestSets[ this.folds ];
+		NaiveBayes full = null;
+		if( this.classifier instanceof NaiveBayes && ( (NaiveBayes) this.classifier ).canRemove( trainSet.getAttributes() ) ) {
+			// a naive Bayes model is counts and sums: train it once and subtract each fold instead
+			full = (NaiveBayes) this.classifier.clone();
+			full.train( trainSet );
+		}
+		final boolean subtract = ( full != null );
+		for(int i = 0; i < this.folds; i++) {
+			classifiers[ i ] = ( full != null ) ? full.copy() : this.classifier.clone();
+			// cross-validate each bin
+			cvSets[ i ] = trainSet.getCVSets( i );
+		}
+		Performance[][] foldPerforms = new Performance[ this.folds ][];
+		if( this.threads <= 1 ) {
+			for(int i = 0; i < this.folds; i++) {
+				this.trainFold( classifiers[ i ], cvSets[ i ], subtract );
+				foldPerforms[ i ] = this.test( classifiers[ i ], cvSets[ i ].getTestingSet() );
+			}
+			return foldPerforms;
+		}
+		ExecutorService pool = Executors.newFixedThreadPool( Math.min( this.threads, this.folds ) );
+		try {
+			ArrayList< Future<Performance[]> > futures = new ArrayList< Future<Performance[]> >();
+			for(int i = 0; i < this.folds; i++) {
+				final int fold = i;
+				futures.add( pool.submit( new Callable<Performance[]>() {
+					public Performance[] call() throws Exception {
+						trainFold( classifiers[ fold ], cvSets[ fold ], subtract );
+						return test( classifiers[ fold ], cvSets[ fold ].getTestingSet() );
+					}
+				} ) );
+			}
+			for(int i = 0; i < this.folds; i++) {
+				try {
+					foldPerforms[ i ] = futures.get( i ).get();
+				}
+				catch( ExecutionException e ) {
+					if( e.getCause() instanceof Exception ) {
+						throw (Exception) e.getCause();
+					}
+					throw e;
+				}
+			}
+		}
+		finally {
+			pool.shutdownNow();
+		}
+		return foldPerforms;
+	}
+	/**
+	 * Trains a classifier for a fold: a naive Bayes model, already trained on the whole data-set, has the
+	 * fold's test examples removed; any other classifier is trained with the fold's training set
+	 * @param classifier
+	 * @param cvSet - the training and testing sets of the fold
+	 * @param subtract - whether the classifier is a trained naive Bayes model to remove the fold from
+	 * @throws Exception
+	 */
+	private void trainFold( Classifier classifier, TrainTestSets cvSet, boolean subtract ) throws Exception {
+		if( subtract ) {
+			( (NaiveBayes) classifier ).remove( cvSet.getTestingSet() );
+		}
+		else {
+			// train with current train data-set
+			classifier.train( cvSet.getTrainingSet() );
+		}
+	}
+	/**
+	 * Tests a trained classifier on a given data-set. When kMax is set, the classifier is an IBk and is
+	 * tested with every k up to kMax from a single neighbor search.
+	 * @param classifier - the trained classifier
+	 * @param testSet
+	 * @return the performance, or the performance of each k starting with k = 1
+	 * @throws Exception
+	 */
+	private Performance[] test( Classifier classifier, DataSet testSet ) throws Exception {
+		if( this.kMax > 0 ) {
+			return ( (IBk) classifier ).classifyUpTo( testSet, this.kMax );
+		}
+		return new Performance[] { classifier.classify( testSet ) };
+	}
+	/**
+	 * Keeps the performances of every k when kMax is set and returns the one of the classifier's own k
+	 * @param performs - the performances returned by test
+	 * @return the performance of the classifier
+	 */
+	private Performance select( Performance[] performs ) {
+		if( this.kMax > 0 ) {
+			this.performances = performs;
+			return performs[ ( (IBk) this.classifier ).k - 1 ];
+		}
+		return performs[ 0 ];
+	}
+	/**
+	 * Returns the performance of each k from the last evaluation, starting with k = 1
+	 * @return the performances, or null if kMax is not set
+	 */
+	public Performance[] getPerformances() {
+		return this.performances;
+	}
 	/**
 	 * Sets the options for this classifier
 	 * @param options - the arguments
@@ -158,6 +279,13 @@ public class Evaluator implements OptionHandler {
 			this.seed = Long.parseLong( args[argsList.indexOf("-s") + 1] );
 			this.random.setSeed( this.seed );
 		}
+		if( argsList.contains( "-threads" ) ) {
+			// if -threads exists, evaluate that many folds concurrently
+			this.threads = Integer.parseInt( args[argsList.indexOf("-threads") + 1] );
+			if( this.threads <= 0 ) {
+				throw new Exception("Error: invalid number of threads detected!");
+			}
+		}
 		if( argsList.contains( "-p" ) ) {
 			// if -p exists, use the hold-out method
 			this.holdouts = Double.parseDouble( args[argsList.indexOf("-p") + 1] );
@@ -169,6 +297,20 @@ public class Evaluator implements OptionHandler {
 		this.tts.getTrainingSet().setRandom( this.random );
 		this.tts.getTestingSet().setRandom( this.random );
 		this.classifier.setOptions( args );
+		if( argsList.contains( "-kmax" ) ) {
+			// if -kmax exists, evaluate IBk with every k up to kmax at once
+			this.kMax = Integer.parseInt( args[argsList.indexOf("-kmax") + 1] );
+			if( !( this.classifier instanceof IBk ) ) {
+				throw new Exception("Error: -kmax is only supported by IBk!");
+			}
+			if( this.kMax < ( (IBk) this.classifier ).k ) {
+				throw new Exception("Error: kmax must be at least k!");
+			}
+			if( !( (IBk) this.classifier ).hasExactSearch() ) {
+				// approximate neighbors for kmax are not those of a separate run with each smaller k
+				throw new Exception("Error: -kmax cannot be used with -quantize or -index lsh!");
+			}
+		}
 	}
 	/**
 	 * Returns seed
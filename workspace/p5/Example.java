@@ -1,24 +1,128 @@
-import java.util.ArrayList;
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
 
 /*
  * Example.java
  * Copyright (c) 2018 Georgetown University.  All Rights Reserved.
  */
 
-public class Example extends ArrayList<Double> {
+public class Example extends AbstractList<Double> implements RandomAccess, Serializable {
+
+	private double[] values;	// the attribute values of this example
+	private int size = 0;		// number of values stored in this example
 
 	/**
 	 * Default constructor
 	 */
 	public Example() {
-		super();
+		this( 10 );
 	}
 	/**
 	 * Explicit constructor. Constructs an Example with n values, where n is greater or equal to two.
 	 * @param n - the number of values of this example
 	 */
 	public Example( int n ) {
-		super(n);
+		super();
+		this.values = new double[ n ];
+	}
+	/**
+	 * Copy constructor. Constructs an Example with the same values as the given example.
+	 * @param example - the example to copy
+	 */
+	public Example( Example example ) {
+		super();
+		this.values = Arrays.copyOf( example.values, example.size );
+		this.size = example.size;
+	}
+	/**
+	 * Returns the ith value of this example without boxing it
+	 * @param i - the index of the value
+	 * @return the ith value
+	 */
+	public double getValue( int i ) {
+		if( i >= this.size ) {
+			throw new IndexOutOfBoundsException( "Index: " + i + ", Size: " + this.size );
+		}
+		return this.values[ i ];
+	}
+	/**
+	 * Replaces the ith value of this example without boxing it
+	 * @param i - the index of the value
+	 * @param value - the new value
+	 */
+	public void setValue( int i, double value ) {
+		if( i >= this.size ) {
+			throw new IndexOutOfBoundsException( "Index: " + i + ", Size: " + this.size );
+		}
+		this.values[ i ] = value;
+	}
+	/**
+	 * Appends a value to this example without boxing it
+	 * @param value - the new value
+	 */
+	public void addValue( double value ) {
+		if( this.size == this.values.length ) {
+			this.values = Arrays.copyOf( this.values, Math.max( 2, this.size * 2 ) );
+		}
+		this.values[ this.size++ ] = value;
+		this.modCount++;
+	}
+	/**
+	 * Returns the ith value of this example
+	 * @param i - the index of the value
+	 * @return the ith value
+	 */
+	public Double get( int i ) {
+		return this.getValue( i );
+	}
+	/**
+	 * Replaces the ith value of this example
+	 * @param i - the index of the value
+	 * @param value - the new value
+	 * @return the previous value
+	 */
+	public Double set( int i, Double value ) {
+		double old = this.getValue( i );
+		this.values[ i ] = value;
+		return old;
+	}
+	/**
+	 * Inserts a value at the specified position of this example
+	 * @param i - the index of the value
+	 * @param value - the new value
+	 */
+	public void add( int i, Double value ) {
+		if( i < 0 || i > this.size ) {
+			throw new IndexOutOfBoundsException( "Index: " + i + ", Size: " + this.size );
+		}
+		if( this.size == this.values.length ) {
+			this.values = Arrays.copyOf( this.values, Math.max( 2, this.size * 2 ) );
+		}
+		System.arraycopy( this.values, i, this.values, i + 1, this.size - i );
+		this.values[ i ] = value;
+		this.size++;
+		this.modCount++;
+	}
+	/**
+	 * Removes the value at the specified position of this example
+	 * @param i - the index of the value
+	 * @return the removed value
+	 */
+	public Double remove( int i ) {
+		double old = this.getValue( i );
+		System.arraycopy( this.values, i + 1, this.values, i, this.size - i - 1 );
+		this.size--;
+		this.modCount++;
+		return old;
+	}
+	/**
+	 * Returns the number of values of this example
+	 * @return the number of values
+	 */
+	public int size() {
+		return this.size;
 	}
 
-}
\ No newline at end of file
+}
@@ -1,4 +1,7 @@
-import java.util.ArrayList;
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
 import java.util.Scanner;
 
 /*
@@ -6,10 +9,17 @@ import java.util.Scanner;
  * Copyright (c) 2018 Georgetown University.  All Rights Reserved.
  */
 
-public class Examples extends ArrayList<Example> {
+public class Examples extends AbstractList<Example> implements RandomAccess, Serializable {
 
 	private Attributes attributes;	// the attributes structure for these examples
 	private int[] classCounts;
+	private Example[] rows = new Example[ 10 ];	// the examples owned by this object
+	private int head = 0;	// position in rows of the first example; removing the first example only advances it
+	private int size = 0;	// number of examples
+	private Examples parent = null;	// the examples this object is a view of, or null if it owns its examples
+	private int[] selection = null;	// positions in parent of the examples of this view
+	private transient Object[] columns;	// column views of the examples; double[] for numeric and int[] for nominal attributes; rebuilt after deserialization
+	private int columnsModCount = -1;	// modCount at the time the column views were built
 
 	/**
 	 * Explicit constructor
@@ -23,6 +33,77 @@ public class Examples extends ArrayList<Example> {
 			this.classCounts[ i ] = 0;
 		}
 	}
+	/**
+	 * Constructs a view of the selected examples of parent without copying them. The class counts
+	 * of the view are computed once here. A view copies its examples only when it is modified, and
+	 * assumes that examples are never removed from or reordered in parent.
+	 * @param parent - the examples to select from
+	 * @param selection - positions in parent of the selected examples, in order
+	 */
+	public Examples( Examples parent, int[] selection ) {
+		this( parent.attributes );
+		if( parent.head != 0 ) {
+			// positions in rows are counted from the start of the array
+			int[] shifted = new int[ selection.length ];
+			for(int i = 0; i < selection.length; i++) {
+				shifted[ i ] = parent.head + selection[ i ];
+			}
+			selection = shifted;
+		}
+		else if( parent.parent != null ) {
+			// select from the root so that views of views stay one level deep
+			int[] composed = new int[ selection.length ];
+			for(int i = 0; i < selection.length; i++) {
+				composed[ i ] = parent.selection[ selection[ i ] ];
+			}
+			selection = composed;
+			parent = parent.parent;
+		}
+		this.parent = parent;
+		this.selection = selection;
+		this.size = selection.length;
+		this.rows = null;
+		int classIdx = this.attributes.getClassIndex();
+		for(int i = 0; i < this.size; i++) {
+			this.classCounts[ (int) parent.rows[ selection[ i ] ].getValue( classIdx ) ]++;
+		}
+	}
+	/**
+	 * Constructs examples from columns: a double[] of values for every numeric attribute and an int[] of
+	 * value indices for every nominal one. The rows are filled from them, and the columns are kept as the
+	 * column views, so getNumericColumn and getNominalColumn return them without another pass.
+	 * @param attributes - the attributes for this set of examples
+	 * @param columns - one column per attribute; they must not be modified afterwards
+	 * @param size - the number of examples in every column
+	 */
+	public Examples( Attributes attributes, Object[] columns, int size ) {
+		this( attributes );
+		double[][] numeric = new double[ columns.length ][];
+		int[][] nominal = new int[ columns.length ][];
+		for(int j = 0; j < columns.length; j++) {
+			if( columns[ j ] instanceof double[] ) {
+				numeric[ j ] = (double[]) columns[ j ];
+			}
+			else {
+				nominal[ j ] = (int[]) columns[ j ];
+			}
+		}
+		this.rows = new Example[ Math.max( size, 10 ) ];
+		for(int i = 0; i < size; i++) {
+			Example row = new Example( columns.length );
+			for(int j = 0; j < columns.length; j++) {
+				row.addValue( ( numeric[ j ] != null ) ? numeric[ j ][ i ] : nominal[ j ][ i ] );
+			}
+			this.rows[ i ] = row;
+		}
+		int[] classColumn = (int[]) columns[ this.attributes.getClassIndex() ];
+		for(int i = 0; i < size; i++) {
+			this.classCounts[ classColumn[ i ] ]++;
+		}
+		this.size = size;
+		this.columns = columns;
+		this.columnsModCount = this.modCount;
+	}
 	/**
 	 * Given the attributes structure, parses the tokens in the scanner, makes Examples, and adds them to this Examples object
 	 * @param scanner - a Scanner containing the examples' tokens
@@ -44,11 +125,11 @@ public class Examples extends ArrayList<Example> {
 			for(int i = 0; i < lineElem.length; i++) {
 				if(this.attributes.get(i) instanceof NumericAttribute) {
 					// numeric attribute value; store the numeric value
-					example.add(Double.parseDouble(lineElem[i]));
+					example.addValue(Double.parseDouble(lineElem[i]));
 				}
 				else {
 					// nominal attribute value; find the index of the value and store that index
-					example.add(Double.valueOf(((NominalAttribute) this.attributes.get(i)).getIndex(lineElem[i])));
+					example.addValue(((NominalAttribute) this.attributes.get(i)).getIndex(lineElem[i]));
 				}
 			}
 			this.add(example);
@@ -66,11 +147,11 @@ public class Examples extends ArrayList<Example> {
 			for(int j=0; j < example.size(); j++) {
 				if(this.attributes.get(j) instanceof NumericAttribute) {
 					// numeric attribute value
-					strBuilder.append(example.get(j));
+					strBuilder.append(example.getValue(j));
 				}
 				else {
 					// nominal attribute value
-					strBuilder.append(((NominalAttribute) this.attributes.get(j)).getValue(example.get(j).intValue())); 
+					strBuilder.append(((NominalAttribute) this.attributes.get(j)).getValue((int) example.getValue(j))); 
 				}
 				strBuilder.append((j == example.size()-1) ? "" : " ");
 			}
@@ -85,11 +166,41 @@ public class Examples extends ArrayList<Example> {
 	public int[] getClassCounts() {
 		return this.classCounts;
 	}
+	/**
+	 * Returns the example at the specified position
+	 * @param index
+	 * @return the example
+	 */
+	public Example get( int index ) {
+		if( index < 0 || index >= this.size ) {
+			throw new IndexOutOfBoundsException( "Index: " + index + ", Size: " + this.size );
+		}
+		return ( this.parent == null ) ? this.rows[ this.head + index ] : this.parent.rows[ this.selection[ index ] ];
+	}
+	/**
+	 * Returns the number of examples
+	 * @return the number of examples
+	 */
+	public int size() {
+		return this.size;
+	}
 	/**
 	 * Stores a given example and increment the classCounts depending on the label of a given example
 	 * @param example
 	 */
 	public boolean add( Example example ) {
+		this.add( this.size, example );
+		return true;
+	}
+	/**
+	 * Inserts a given example at the specified position and increment the classCounts
+	 * @param index
+	 * @param example
+	 */
+	public void add( int index, Example example ) {
+		if( index < 0 || index > this.size ) {
+			throw new IndexOutOfBoundsException( "Index: " + index + ", Size: " + this.size );
+		}
 		int classIdx = this.attributes.getClassIndex();
 		// check if classCounts is null
 		if( this.classCounts == null ) {
@@ -100,10 +211,168 @@ public class Examples extends ArrayList<Example> {
 			}
 		}
 		// update classCounts
-		int currLabel = example.get( classIdx ).intValue();
+		int currLabel = (int) example.getValue( classIdx );
 		this.classCounts[ currLabel ]++;
 		// add this to list
-		return super.add( example );
+		this.materialize( this.size + 1 );
+		System.arraycopy( this.rows, this.head + index, this.rows, this.head + index + 1, this.size - index );
+		this.rows[ this.head + index ] = example;
+		this.size++;
+		this.modCount++;
+	}
+	/**
+	 * Replaces the example at the specified position and drops the column views, since the
+	 * new example may hold different values
+	 * @param index
+	 * @param example
+	 * @return the previous example
+	 */
+	public Example set( int index, Example example ) {
+		Example old = this.get( index );
+		this.invalidateColumns();
+		if( old != example ) {
+			int classIdx = this.attributes.getClassIndex();
+			this.classCounts[ (int) old.getValue( classIdx ) ]--;
+			this.classCounts[ (int) example.getValue( classIdx ) ]++;
+			this.materialize( this.size );
+			this.rows[ this.head + index ] = example;
+		}
+		return old;
+	}
+	/**
+	 * Removes the example at the specified position and decrement the classCounts. Removing the first
+	 * example takes constant time, so that a sliding window can drop its oldest example.
+	 * @param index
+	 * @return the removed example
+	 */
+	public Example remove( int index ) {
+		Example old = this.get( index );
+		this.classCounts[ (int) old.getValue( this.attributes.getClassIndex() ) ]--;
+		this.materialize( this.size );
+		if( index == 0 ) {
+			this.rows[ this.head++ ] = null;
+			this.size--;
+		}
+		else {
+			System.arraycopy( this.rows, this.head + index + 1, this.rows, this.head + index, this.size - index - 1 );
+			this.rows[ this.head + --this.size ] = null;
+		}
+		this.modCount++;
+		return old;
+	}
+	/**
+	 * Makes sure that this object owns an array with room for at least the given number of examples
+	 * after head; a view copies its selected examples at this point. Slots freed at the front by
+	 * removals are reclaimed before the array grows.
+	 * @param capacity
+	 */
+	private void materialize( int capacity ) {
+		if( this.parent != null ) {
+			Example[] owned = new Example[ Math.max( capacity, 10 ) ];
+			for(int i = 0; i < this.size; i++) {
+				owned[ i ] = this.parent.rows[ this.selection[ i ] ];
+			}
+			this.rows = owned;
+			this.parent = null;
+			this.selection = null;
+		}
+		else if( this.head + capacity > this.rows.length ) {
+			// move the examples to the front, growing the array if they would fill more than half of it
+			Example[] moved = this.rows;
+			if( this.head == 0 || capacity * 2 > this.rows.length ) {
+				moved = new Example[ Math.max( capacity, this.rows.length + ( this.rows.length >> 1 ) ) ];
+			}
+			System.arraycopy( this.rows, this.head, moved, 0, this.size );
+			if( moved == this.rows ) {
+				Arrays.fill( moved, this.size, this.head + this.size, null );
+			}
+			this.rows = moved;
+			this.head = 0;
+		}
+	}
+	/**
+	 * Serializes a view as examples of their own that hold only the selected rows, so that cloning a view,
+	 * or a data-set or classifier holding one, does not copy its whole parent
+	 * @return the object to serialize in place of this one
+	 */
+	private Object writeReplace() {
+		if( this.parent == null ) {
+			return this;
+		}
+		Examples owned = new Examples( this.attributes );
+		owned.rows = new Example[ Math.max( this.size, 10 ) ];
+		for(int i = 0; i < this.size; i++) {
+			owned.rows[ i ] = this.parent.rows[ this.selection[ i ] ];
+		}
+		owned.size = this.size;
+		owned.classCounts = this.classCounts.clone();
+		return owned;
+	}
+	/**
+	 * Drops the column views; callers that change example values in place must call this
+	 */
+	public synchronized void invalidateColumns() {
+		this.columns = null;
+	}
+	/**
+	 * Returns the values of a numeric attribute as a contiguous column, one entry per example
+	 * @param attribute - the index of the attribute
+	 * @return the column; callers must not modify it
+	 */
+	public double[] getNumericColumn( int attribute ) {
+		return (double[]) this.getColumn( attribute, true );
+	}
+	/**
+	 * Returns the value indices of a nominal attribute as a contiguous column, one entry per example
+	 * @param attribute - the index of the attribute
+	 * @return the column; callers must not modify it
+	 */
+	public int[] getNominalColumn( int attribute ) {
+		return (int[]) this.getColumn( attribute, false );
+	}
+	/**
+	 * Returns the column view of an attribute, building it if it is missing or out of date
+	 * @param attribute
+	 * @param numeric
+	 * @return the column as a double[] or int[]
+	 */
+	private synchronized Object getColumn( int attribute, boolean numeric ) {
+		if( this.columns == null || this.columnsModCount != this.modCount ) {
+			this.columns = new Object[ this.attributes.size() ];
+			this.columnsModCount = this.modCount;
+		}
+		Object column = this.columns[ attribute ];
+		if( numeric && !( column instanceof double[] ) ) {
+			double[] values = new double[ this.size() ];
+			for(int i = 0; i < values.length; i++) {
+				values[ i ] = this.get( i ).getValue( attribute );
+			}
+			column = values;
+		}
+		else if( !numeric && !( column instanceof int[] ) ) {
+			int[] values = new int[ this.size() ];
+			for(int i = 0; i < values.length; i++) {
+				values[ i ] = (int) this.get( i ).getValue( attribute );
+			}
+			column = values;
+		}
+		this.columns[ attribute ] = column;
+		return column;
+	}
+	/**
+	 * Appends the given examples in order and adds their classCounts to this object's classCounts
+	 * @param examples
+	 */
+	public void append( Examples examples ) {
+		int[] counts = examples.getClassCounts();
+		for(int i = 0; i < counts.length; i++) {
+			this.classCounts[ i ] += counts[ i ];
+		}
+		this.materialize( this.size + examples.size() );
+		for(int i = 0; i < examples.size(); i++) {
+			this.rows[ this.head + this.size++ ] = examples.get( i );
+		}
+		this.modCount++;
 	}
 
 }
\ No newline at end of file
@@ -4,49 +4,187 @@
  */
 
 public class GaussianEstimator extends Estimator {
-	protected Double sum = 0.0;
-	protected Double sumsqr = 0.0;
+	protected double mean = 0;		// running mean (Welford)
+	protected double m2 = 0;		// running sum of squared deviations from the mean (Welford)
 	protected final static Double oneOverSqrt2PI = 1.0/Math.sqrt(2.0*Math.PI);
+	// parameters of the density, computed by freeze() when the samples change
+	protected boolean frozen = false;
+	protected double variance;
+	protected double normalizer;	// 1 / sqrt(2 pi var), infinite for a point mass
+	protected double logNormalizer;	// log( 1 / sqrt(2 pi var) ), infinite for a point mass
+	protected double invTwoVar;		// 1 / (2 var), infinite for a point mass
 
 	/**
 	 * Default constructor
 	 */
 	public GaussianEstimator() {
-		
+
 	}
 	/**
 	 * Increment values
 	 * @param x
 	 */
 	public void add( Number x ) throws Exception {
-		// increment values
+		this.add( x.doubleValue() );
+	}
+	/**
+	 * Increment values; Welford's update keeps the squared deviations accurate when the mean is large
+	 * compared to the spread
+	 * @param x
+	 */
+	public void add( double x ) throws Exception {
 		this.n++;
-		this.sum += x.doubleValue();
-		this.sumsqr += Math.pow(x.doubleValue(), 2);
+		double delta = x - this.mean;
+		this.mean += delta / this.n;
+		this.m2 += delta * ( x - this.mean );
+		this.frozen = false;
+	}
+	/**
+	 * Decrement values
+	 * @param x
+	 */
+	public void remove( Number x ) throws Exception {
+		this.remove( x.doubleValue() );
+	}
+	/**
+	 * Decrement values, reversing Welford's update
+	 * @param x
+	 */
+	public void remove( double x ) throws Exception {
+		if( this.n == 0 ) {
+			throw new Exception("Error: no sample to remove!");
+		}
+		this.n--;
+		this.frozen = false;
+		if( this.n == 0 ) {
+			// drop the rounding left over in the moments
+			this.mean = 0;
+			this.m2 = 0;
+			return;
+		}
+		double oldMean = this.mean;
+		this.mean -= ( x - oldMean ) / this.n;
+		this.m2 = Math.max( 0, this.m2 - ( x - this.mean ) * ( x - oldMean ) );
+	}
+	/**
+	 * Adds the samples of another Gaussian estimator, combining the moments with Chan's formula
+	 * @param other
+	 * @throws Exception
+	 */
+	public void merge( Estimator other ) throws Exception {
+		if( !( other instanceof GaussianEstimator ) ) {
+			throw new Exception("Error: incompatible Estimator object passed-in!");
+		}
+		GaussianEstimator gaussian = (GaussianEstimator) other;
+		if( gaussian.n == 0 ) {
+			return;
+		}
+		int total = this.n + gaussian.n;
+		double delta = gaussian.mean - this.mean;
+		this.mean += delta * gaussian.n / total;
+		this.m2 += gaussian.m2 + delta * delta * ( (double) this.n * gaussian.n / total );
+		this.n = total;
+		this.frozen = false;
+	}
+	/**
+	 * Removes the samples of another Gaussian estimator, every one of which was added to this one, by
+	 * reversing Chan's formula
+	 * @param other
+	 * @throws Exception
+	 */
+	public void subtract( GaussianEstimator other ) throws Exception {
+		if( other.n > this.n ) {
+			throw new Exception("Error: no sample to remove!");
+		}
+		if( other.n == 0 ) {
+			return;
+		}
+		int total = this.n;
+		this.n -= other.n;
+		this.frozen = false;
+		if( this.n == 0 ) {
+			this.mean = 0;
+			this.m2 = 0;
+			return;
+		}
+		double rest = ( total * this.mean - other.n * other.mean ) / this.n;
+		double delta = other.mean - rest;
+		this.m2 = Math.max( 0, this.m2 - other.m2 - delta * delta * ( (double) this.n * other.n / total ) );
+		this.mean = rest;
 	}
 	/**
 	 * Compute and return mean
 	 * @return mean
 	 */
 	public Double getMean() {
-		double mean = 0;
-		if( this.n > 0 ) {
-			// calculate only when number of samples is greater than 0
-			mean = this.sum / this.n;
-		}
-		return mean;
+		return this.mean;
 	}
 	/**
 	 * Compute and return variance
-	 * @return variance
+	 * @return variance, 0 with fewer than two samples
 	 */
 	public Double getVariance() {
-        double variance = 0;
-        if( this.n > 0 ) {
-        	// calculate only when number of samples is greater than 0
-        	variance = ( this.sumsqr - ( Math.pow(this.sum, 2) / this.n ) ) / ( this.n - 1 );
-        }
-        return variance;
+		double variance = 0;
+		if( this.n > 1 ) {
+			// calculate only when there is a spread to estimate
+			variance = this.m2 / ( this.n - 1 );
+		}
+		return variance;
+	}
+	/**
+	 * Computes the variance and the constants of the density once, so that evaluating it takes one
+	 * subtraction, two multiplications and an exp; adding or removing samples unfreezes them. Samples
+	 * with no spread, such as a single one, make a point mass: the density is infinite at the mean and
+	 * 0 elsewhere.
+	 */
+	public void freeze() {
+		if( this.frozen ) {
+			return;
+		}
+		if( this.n > 0 && this.m2 == 0 ) {
+			this.variance = 0;
+			this.normalizer = Double.POSITIVE_INFINITY;
+			this.logNormalizer = Double.POSITIVE_INFINITY;
+			this.invTwoVar = Double.POSITIVE_INFINITY;
+		}
+		else if( this.n > 0 ) {
+			this.variance = this.getVariance();
+			this.normalizer = oneOverSqrt2PI / Math.sqrt( this.variance );
+			this.logNormalizer = -0.5 * Math.log( 2 * Math.PI * this.variance );
+			this.invTwoVar = 1 / ( 2 * this.variance );
+		}
+		else {
+			// no samples: the density is 0 everywhere
+			this.variance = 0;
+			this.normalizer = 0;
+			this.logNormalizer = Double.NEGATIVE_INFINITY;
+			this.invTwoVar = 0;
+		}
+		this.frozen = true;
+	}
+	/**
+	 * Returns 1 / sqrt(2 pi var), freezing the parameters first
+	 * @return normalizer, or infinity for a point mass
+	 */
+	public double getNormalizer() {
+		this.freeze();
+		return this.normalizer;
+	}
+	/**
+	 * Returns log( 1 / sqrt(2 pi var) ), freezing the parameters first
+	 * @return log normalizer, negative infinity if there are no samples, or infinity for a point mass
+	 */
+	public double getLogNormalizer() {
+		this.freeze();
+		return this.logNormalizer;
+	}
+	/**
+	 * Returns 1 / (2 var), freezing the parameters first
+	 * @return inverse of twice the variance, or infinity for a point mass
+	 */
+	public double getInverseTwoVariance() {
+		this.freeze();
+		return this.invTwoVar;
 	}
 	/**
 	 * Compute and return probability
@@ -54,12 +192,49 @@ public class GaussianEstimator extends Estimator {
 	 * @return probability
 	 */
 	public Double getProbability( Number x ) {
-		double prob = 0;
-		if( this.n > 0 ) {
-			// calculate only when number of samples is greater than 0
-			Double var = this.getVariance();
-			prob = oneOverSqrt2PI * ( 1 / Math.sqrt( var ) ) * Math.exp( (-1 * Math.pow( x.doubleValue() - this.getMean(), 2 ) ) / ( 2 * var ));
+		return this.getProbability( x.doubleValue() );
+	}
+	/**
+	 * Compute and return probability
+	 * @param x
+	 * @return probability
+	 */
+	public double getProbability( double x ) {
+		this.freeze();
+		if( this.n == 0 ) {
+			return 0;
+		}
+		double diff = x - this.mean;
+		if( this.invTwoVar == Double.POSITIVE_INFINITY ) {
+			return ( diff == 0 ) ? Double.POSITIVE_INFINITY : 0;
+		}
+		return this.normalizer * Math.exp( -diff * diff * this.invTwoVar );
+	}
+	/**
+	 * Compute and return the log of the probability
+	 * @param x
+	 * @return log density, or negative infinity if there are no samples
+	 */
+	public double getLogDensity( double x ) {
+		this.freeze();
+		if( this.n == 0 ) {
+			return Double.NEGATIVE_INFINITY;
+		}
+		return logDensity( x, this.mean, this.logNormalizer, this.invTwoVar );
+	}
+	/**
+	 * Computes the log of a Gaussian density from its frozen parameters, which may make a point mass
+	 * @param x
+	 * @param mean
+	 * @param logNormalizer
+	 * @param invTwoVar
+	 * @return log density
+	 */
+	public static double logDensity( double x, double mean, double logNormalizer, double invTwoVar ) {
+		double diff = x - mean;
+		if( invTwoVar == Double.POSITIVE_INFINITY ) {
+			return ( diff == 0 ) ? Double.POSITIVE_INFINITY : Double.NEGATIVE_INFINITY;
 		}
-		return prob;
+		return logNormalizer - diff * diff * invTwoVar;
 	}
-}
\ No newline at end of file
+}
@@ -7,9 +7,25 @@ import java.util.Arrays;
  */
 
 public class IBk extends Classifier implements Serializable, OptionHandler {
+	protected static final int BATCH_SIZE = 64;	// queries classified together by classify( DataSet )
 	protected DataSet dataset;
 	protected Scaler scaler;
 	protected int k = 3;
+	protected String index = null;			// neighbor index to use, or null for a linear scan
+	protected NeighborSearch search = null;	// neighbor search over the scaled training set
+	protected int lshTables = 8;			// number of hash tables of the approximate search
+	protected int lshHashes = 4;			// number of hash functions per table of the approximate search
+	protected double lshWidth = 0.5;		// bucket width of the approximate search
+	protected int recallInterval = 0;		// if positive, check every nth query of the approximate search against an exact search
+	protected NeighborSearch exactSearch = null;	// exact search used to measure recall
+	protected int quantize = 0;				// bits per value of a quantized training store, or 0 for none
+	protected int rerank = 4;				// candidates of the quantized store re-ranked exactly, as a multiple of k
+	protected String reduce = null;			// prototype reduction applied in train: enn, cnn or enn+cnn
+	protected int numTrained = 0;			// number of training examples before the reduction
+	protected int window = 0;				// if positive, the most training examples kept; add drops the oldest
+	protected boolean rescale = true;		// whether add widens the scaler's mins and maxs to cover a new example
+	protected boolean ownsDataset = false;	// whether the stored data-set is a copy that may be modified
+	protected boolean storesUnscaled = false;	// whether the stored data-set is unscaled, because the quantized search scales what it reads
 
 	/**
 	 * Default constructor
@@ -35,17 +51,72 @@ public class IBk extends Classifier implements Serializable, OptionHandler {
 	 * @return performance
 	 */
 	public Performance classify( DataSet dataset ) throws Exception {
-		Performance perform = new Performance( dataset.getAttributes() );
+		return this.classify( dataset, this.k, this.k )[ 0 ];
+	}
+	/**
+	 * Classifies a given data-set with every k from 1 to kMax and return the performances. The neighbors
+	 * are searched once, up to kMax; the k nearest are a prefix of them for every smaller k. This only holds
+	 * for an exact search: a quantized store re-ranks rerank * kMax candidates and LSH ranks whatever shares
+	 * a bucket, so their neighbors for a smaller k can differ from a separate run with that k.
+	 * @param dataset
+	 * @param kMax - the largest k
+	 * @return performance of each k, starting with k = 1
+	 * @throws Exception - if kMax is invalid or the neighbor search is approximate
+	 */
+	public Performance[] classifyUpTo( DataSet dataset, int kMax ) throws Exception {
+		if( kMax <= 0 ) {
+			throw new Exception("Error: invalid k passed-in!");
+		}
+		if( this.search != null && !this.search.isExact() ) {
+			throw new Exception("Error: every k up to kmax can only be classified with an exact neighbor search!");
+		}
+		return this.classify( dataset, 1, kMax );
+	}
+	/**
+	 * Classifies a given data-set with every k from minK to maxK and return the performances
+	 * @param dataset
+	 * @param minK
+	 * @param maxK
+	 * @return performance of each k, starting with minK
+	 */
+	private Performance[] classify( DataSet dataset, int minK, int maxK ) throws Exception {
+		Performance[] performs = new Performance[ maxK - minK + 1 ];
+		for(int k = minK; k <= maxK; k++) {
+			performs[ k - minK ] = new Performance( dataset.getAttributes() );
+		}
+		if( this.reduce != null ) {
+			for(int k = minK; k <= maxK; k++) {
+				performs[ k - minK ].addRetained( this.dataset.getExamples().size(), this.numTrained );
+			}
+		}
 		Examples exs = dataset.getExamples();
 		if( exs != null ) {
-			for(int i = 0; i < exs.size(); i++) {
-				// append this prediction result to the performance
-				Example ex = exs.get(i);
-				int actualClass = ex.get( dataset.getAttributes().getClassIndex() ).intValue();
-				perform.add( actualClass, this.getDistribution( ex ) );
+			for(int from = 0; from < exs.size(); from += BATCH_SIZE) {
+				// find the neighbors of a batch of queries at once
+				Example[] scaledQs = new Example[ Math.min( BATCH_SIZE, exs.size() - from ) ];
+				for(int q = 0; q < scaledQs.length; q++) {
+					scaledQs[ q ] = this.scaler.scale( exs.get( from + q ) );
+				}
+				int[][] neighbors = this.search.getNeighbors( scaledQs, maxK );
+				for(int q = 0; q < scaledQs.length; q++) {
+					int i = from + q;
+					int[] exact = null;
+					if( this.exactSearch != null && i % this.recallInterval == 0 ) {
+						// compare the approximate neighbors of this query with the exact ones
+						exact = this.exactSearch.getNeighbors( scaledQs[ q ], maxK );
+					}
+					int actualClass = (int) exs.get( i ).getValue( dataset.getAttributes().getClassIndex() );
+					for(int k = minK; k <= maxK; k++) {
+						if( exact != null ) {
+							performs[ k - minK ].addRecall( this.countFound( scaledQs[ q ], neighbors[ q ], exact, k ), Math.min( k, this.dataset.getExamples().size() ) );
+						}
+						// append this prediction result to the performance
+						performs[ k - minK ].add( actualClass, this.getDistribution( neighbors[ q ], k ) );
+					}
+				}
 			}
 		}
-		return perform;
+		return performs;
 	}
 	/**
 	 * Classifies a given example query and return the predicted label
@@ -67,59 +138,111 @@ public class IBk extends Classifier implements Serializable, OptionHandler {
 		if( query == null || query.isEmpty() ) {
 			throw new Exception("Error: invalid Example object passed-in!");
 		}
-		
-		// create distances and indices arrays with size = k
-		double[] distances = new double[ this.k ];
-		int[] indices = new int[ this.k ];
-		// initialize values
-		for(int i = 0; i < this.k; i++) {
-			distances[ i ] = Double.MAX_VALUE;
-		}
-		Example scaledQ = this.scaler.scale( query );
-		for(int i = 0; i < this.dataset.getExamples().size(); i++) {
-			Example example = this.dataset.getExamples().get(i);
-			// calculate distance between this example and query
-			double totalDist = 0;
-			for(int j = 0; j < this.dataset.getAttributes().size()-1; j++) {
-				if( this.dataset.getAttributes().get(j) instanceof NumericAttribute ) {
-					// calculate using distance equation
-					totalDist += Math.pow( ( scaledQ.get(j) - example.get(j) ), 2 );
-				}
-				else {
-					// nominal attributes; 0 or 1
-					totalDist += ( scaledQ.get(j).equals( example.get(j) ) ) ? 0 : 1;
-				}
-			}
-			double distance = Math.sqrt( totalDist );
-			// get index of max value in distances
-			int maxIdx = Utils.maxIndex( distances );
-			// if current distance is smaller update the value
-			if( distance <= distances[ maxIdx ] ) {
-				distances[ maxIdx ] = distance;	// update distance value
-				indices[ maxIdx ] = i;			// update index
-			}
-		}
+		return this.getDistribution( this.search.getNeighbors( this.scaler.scale( query ), this.k ), this.k );
+	}
+	/**
+	 * Compute the distribution from the class labels of the k nearest of given neighbors
+	 * @param neighbors - training-set positions of the neighbors, closest first
+	 * @param k - the number of neighbors to use
+	 * @return double[] - distribution
+	 */
+	protected double[] getDistribution( int[] neighbors, int k ) {
 		double[] distributions = new double[ this.dataset.getAttributes().getClassAttribute().size() ];
-		for(int i = 0; i < indices.length; i++) {
+		for(int i = 0; i < k; i++) {
+			// slots without a neighbor at a finite distance fall back to the first example
+			int neighbor = ( i < neighbors.length ) ? neighbors[ i ] : 0;
 			// get the index of a class that this nearest neighbor belongs to
-			int idx = this.dataset.getExamples().get( indices[i] ).get( this.dataset.getAttributes().getClassIndex() ).intValue();
+			int idx = (int) this.dataset.getExamples().get( neighbor ).getValue( this.dataset.getAttributes().getClassIndex() );
 			distributions[ idx ]++;
 		}
 		// scale distributions
 		for(int i = 0; i < distributions.length; i++) {
-			distributions[ i ]  = distributions[ i ] / (double) this.k;
+			distributions[ i ]  = distributions[ i ] / (double) k;
 		}
 		return distributions;
 	}
+	/**
+	 * Counts the k nearest approximate neighbors of a scaled query that are as close as its exact kth
+	 * neighbor, so that neighbors tied with an exact one count as found
+	 * @param scaledQ
+	 * @param neighbors - the approximate neighbors, closest first
+	 * @param exact - the exact neighbors, closest first
+	 * @param k - the number of neighbors to compare
+	 * @return the number of neighbors found, at most k
+	 */
+	protected int countFound( Example scaledQ, int[] neighbors, int[] exact, int k ) throws Exception {
+		int numExact = Math.min( k, exact.length );
+		if( numExact == 0 ) {
+			return 0;
+		}
+		double kthDist = this.exactSearch.distance( scaledQ, this.dataset.getExamples().get( exact[ numExact - 1 ] ) );
+		int found = 0;
+		for(int i = 0; i < Math.min( k, neighbors.length ) && found < numExact; i++) {
+			if( this.exactSearch.distance( scaledQ, this.dataset.getExamples().get( neighbors[ i ] ) ) <= kthDist ) {
+				found++;
+			}
+		}
+		return found;
+	}
 	/**
 	 * Sets the options for this classifier
 	 * @param options - the arguments
+	 * @throws Exception
 	 */
-	public void setOptions( String args[] ) {
+	public void setOptions( String args[] ) throws Exception {
 		// search for -k and if it exists, update the value of k
 		if( Arrays.asList(args).contains("-k") ) {
 			this.setK( Integer.parseInt( args[Arrays.asList(args).indexOf("-k") + 1] ) );
 		}
+		// search for -index and if it exists, find neighbors with that index instead of a linear scan
+		if( Arrays.asList(args).contains("-index") ) {
+			this.setIndex( args[Arrays.asList(args).indexOf("-index") + 1] );
+		}
+		// options of the approximate (lsh) search
+		if( Arrays.asList(args).contains("-lsh-tables") ) {
+			this.lshTables = Integer.parseInt( args[Arrays.asList(args).indexOf("-lsh-tables") + 1] );
+		}
+		if( Arrays.asList(args).contains("-lsh-hashes") ) {
+			this.lshHashes = Integer.parseInt( args[Arrays.asList(args).indexOf("-lsh-hashes") + 1] );
+		}
+		if( Arrays.asList(args).contains("-lsh-width") ) {
+			this.lshWidth = Double.parseDouble( args[Arrays.asList(args).indexOf("-lsh-width") + 1] );
+		}
+		// search for -quantize and if it exists, scan a fixed-point copy of the training set with that many bits
+		if( Arrays.asList(args).contains("-quantize") ) {
+			this.quantize = Integer.parseInt( args[Arrays.asList(args).indexOf("-quantize") + 1] );
+			if( this.quantize != 0 && this.quantize != 8 && this.quantize != 16 ) {
+				throw new Exception("Error: invalid quantization bits detected!");
+			}
+		}
+		if( Arrays.asList(args).contains("-rerank") ) {
+			this.rerank = Integer.parseInt( args[Arrays.asList(args).indexOf("-rerank") + 1] );
+			if( this.rerank <= 0 ) {
+				throw new Exception("Error: invalid re-rank factor detected!");
+			}
+		}
+		// search for -window and if it exists, keep at most that many examples as new ones are added
+		if( Arrays.asList(args).contains("-window") ) {
+			this.setWindow( Integer.parseInt( args[Arrays.asList(args).indexOf("-window") + 1] ) );
+		}
+		// search for -rescale and if it exists, set whether adding an example may widen the scaler
+		if( Arrays.asList(args).contains("-rescale") ) {
+			String policy = args[Arrays.asList(args).indexOf("-rescale") + 1];
+			if( !policy.equals( "grow" ) && !policy.equals( "never" ) ) {
+				throw new Exception("Error: unknown rescale policy " + policy + "!");
+			}
+			this.rescale = policy.equals( "grow" );
+		}
+		// search for -reduce and if it exists, keep only the prototypes selected by that rule
+		if( Arrays.asList(args).contains("-reduce") ) {
+			this.setReduce( args[Arrays.asList(args).indexOf("-reduce") + 1] );
+		}
+		if( Arrays.asList(args).contains("-recall") ) {
+			this.recallInterval = Integer.parseInt( args[Arrays.asList(args).indexOf("-recall") + 1] );
+			if( this.recallInterval < 0 ) {
+				throw new Exception("Error: invalid recall interval detected!");
+			}
+		}
 	}
 	/**
 	 * Train using a given data-set
@@ -127,13 +250,191 @@ public class IBk extends Classifier implements Serializable, OptionHandler {
 	 */
 	public void train( DataSet dataset ) throws Exception {
 		this.scaler.configure( dataset );
-		if( dataset.getHasNumericAttributes() ) {
+		// a quantized search keeps its own compact copy and scales the few candidates it re-ranks, so the
+		// examples are not copied just to scale them
+		this.storesUnscaled = dataset.getHasNumericAttributes() && this.index == null && this.quantize > 0
+			&& this.reduce == null && this.recallInterval == 0;
+		if( dataset.getHasNumericAttributes() && !this.storesUnscaled ) {
 			// scale this data-set only when numeric attributes exist
 			this.dataset = this.scaler.scale( dataset );
 		}
 		else {
 			this.dataset = dataset;
 		}
+		this.ownsDataset = ( dataset.getHasNumericAttributes() && !this.storesUnscaled ) || this.reduce != null;
+		this.numTrained = this.dataset.getExamples().size();
+		if( this.reduce != null ) {
+			// keep only the prototypes; edit first so that condensing does not keep the noise
+			if( this.reduce.startsWith( "enn" ) ) {
+				this.dataset = PrototypeSelection.select( this.dataset, PrototypeSelection.edit( this.dataset, this.k ) );
+			}
+			if( this.reduce.endsWith( "cnn" ) && !this.dataset.getExamples().isEmpty() ) {
+				this.dataset = PrototypeSelection.select( this.dataset, PrototypeSelection.condense( this.dataset ) );
+			}
+			if( this.dataset.getExamples().isEmpty() ) {
+				throw new Exception("Error: the prototype reduction removed every example!");
+			}
+		}
+		this.search = this.createSearch();
+		if( this.storesUnscaled ) {
+			( (QuantizedSearch) this.search ).setScaler( this.scaler );
+		}
+		this.search.build( this.dataset );
+		this.exactSearch = null;
+		if( !this.search.isExact() && this.recallInterval > 0 ) {
+			// keep an exact search to measure the recall of the approximate one
+			this.exactSearch = new LinearSearch();
+			this.exactSearch.build( this.dataset );
+		}
+	}
+	/**
+	 * Adds a labeled example to the trained model without retraining. The example is scaled with the current
+	 * scaler and appended to the stored data-set and the neighbor search. If it falls outside the scaler's
+	 * mins and maxs and rescaling is on, the range is widened with some headroom and the stored examples
+	 * are rescaled first, which rebuilds the search; otherwise values outside the range scale outside
+	 * [0, 1]. When a window is set, the oldest examples are dropped to keep at most that many; each drop
+	 * takes constant time.
+	 * @param example - the unscaled example
+	 * @throws Exception
+	 */
+	public void add( Example example ) throws Exception {
+		if( this.dataset == null ) {
+			throw new Exception("Error: the classifier is not trained yet!");
+		}
+		if( example == null || example.size() != this.dataset.getAttributes().size() ) {
+			throw new Exception("Error: invalid Example object passed-in!");
+		}
+		this.ownDataset();
+		boolean hasNumeric = this.dataset.getHasNumericAttributes();
+		if( hasNumeric && this.rescale && !this.scaler.covers( example ) ) {
+			this.rescale( this.scaler.widen( example ) );
+		}
+		Example scaled = ( hasNumeric && !this.storesUnscaled ) ? this.scaler.scale( example ) : example;
+		this.dataset.add( scaled );
+		this.numTrained++;
+		this.search.add( scaled );
+		if( this.exactSearch != null ) {
+			this.exactSearch.add( scaled );
+		}
+		while( this.window > 0 && this.dataset.getExamples().size() > this.window ) {
+			this.removeOldest();
+		}
+	}
+	/**
+	 * Removes the oldest training example, the first one of the stored data-set, without retraining. The
+	 * scaler's mins and maxs are not narrowed; call refit for that.
+	 * @throws Exception
+	 */
+	public void removeOldest() throws Exception {
+		if( this.dataset == null ) {
+			throw new Exception("Error: the classifier is not trained yet!");
+		}
+		if( this.dataset.getExamples().size() <= 1 ) {
+			throw new Exception("Error: cannot remove the last training example!");
+		}
+		this.ownDataset();
+		this.dataset.getExamples().remove( 0 );
+		this.numTrained--;
+		this.search.removeFirst();
+		if( this.exactSearch != null ) {
+			this.exactSearch.removeFirst();
+		}
+	}
+	/**
+	 * Refits the scaler's mins and maxs to the stored examples, for example after a window has slid past
+	 * the extreme values, and rescales them
+	 * @throws Exception
+	 */
+	public void refit() throws Exception {
+		if( this.dataset == null ) {
+			throw new Exception("Error: the classifier is not trained yet!");
+		}
+		if( !this.dataset.getHasNumericAttributes() ) {
+			return;
+		}
+		DataSet unscaled = this.dataset;
+		if( !this.storesUnscaled ) {
+			unscaled = new DataSet( this.dataset.getAttributes() );
+			for(int i = 0; i < this.dataset.getExamples().size(); i++) {
+				unscaled.add( this.scaler.unscale( this.dataset.getExamples().get( i ) ) );
+			}
+		}
+		Scaler refitted = new Scaler();
+		refitted.configure( unscaled );
+		this.rescale( refitted );
+	}
+	/**
+	 * Rescales the stored examples from the current scaler to a given one, which replaces it, and rebuilds
+	 * the neighbor search; an unscaled store only has its quantized copy rebuilt
+	 * @param scaler
+	 * @throws Exception
+	 */
+	protected void rescale( Scaler scaler ) throws Exception {
+		this.ownDataset();
+		if( this.storesUnscaled ) {
+			( (QuantizedSearch) this.search ).setScaler( scaler );
+		}
+		else {
+			Examples examples = this.dataset.getExamples();
+			for(int i = 0; i < examples.size(); i++) {
+				examples.set( i, scaler.scale( this.scaler.unscale( examples.get( i ) ) ) );
+			}
+		}
+		this.scaler = scaler;
+		this.search.build( this.dataset );
+		if( this.exactSearch != null ) {
+			this.exactSearch.build( this.dataset );
+		}
+	}
+	/**
+	 * Replaces the stored data-set with a copy before it is first modified, unless train already made one,
+	 * since it may be the caller's data-set
+	 */
+	private void ownDataset() throws Exception {
+		if( !this.ownsDataset ) {
+			DataSet copy = new DataSet( this.dataset.getAttributes() );
+			copy.name = this.dataset.name;
+			copy.random = this.dataset.random;
+			copy.folds = this.dataset.folds;
+			copy.examples = new Examples( this.dataset.getAttributes() );
+			for(int i = 0; i < this.dataset.getExamples().size(); i++) {
+				copy.add( this.dataset.getExamples().get( i ) );
+			}
+			this.dataset = copy;
+			this.search.build( this.dataset );
+			if( this.exactSearch != null ) {
+				this.exactSearch.build( this.dataset );
+			}
+			this.ownsDataset = true;
+		}
+	}
+	/**
+	 * Checks if the configured neighbor search is exact; -quantize and -index lsh approximate the neighbors
+	 * @return true if it is exact, false otherwise
+	 * @throws Exception - if the configured index is unknown
+	 */
+	public boolean hasExactSearch() throws Exception {
+		return this.createSearch().isExact();
+	}
+	/**
+	 * Creates an empty neighbor search of the configured type
+	 * @return the neighbor search
+	 * @throws Exception
+	 */
+	protected NeighborSearch createSearch() throws Exception {
+		if( this.index == null ) {
+			return ( this.quantize > 0 ) ? new QuantizedSearch( this.quantize, this.rerank ) : new LinearSearch();
+		}
+		else if( this.index.equals( "kd" ) ) {
+			return new KDTree();
+		}
+		else if( this.index.equals( "vp" ) ) {
+			return new VPTree();
+		}
+		else if( this.index.equals( "lsh" ) ) {
+			return new LSHSearch( this.lshTables, this.lshHashes, this.lshWidth );
+		}
+		throw new Exception("Error: unknown neighbor index " + this.index + "!");
 	}
 	/**
 	 * Makes a deep copy of this class
@@ -149,6 +450,52 @@ public class IBk extends Classifier implements Serializable, OptionHandler {
 	public void setK( int k ) {
 		this.k = k;
 	}
+	/**
+	 * Replace the neighbor index; kd builds a k-d tree over the numeric attributes, vp builds a
+	 * vantage-point tree over all attributes, lsh uses an approximate locality-sensitive hashing search,
+	 * none uses a linear scan
+	 * @param index
+	 * @throws Exception
+	 */
+	public void setIndex( String index ) throws Exception {
+		if( index.equals( "none" ) ) {
+			this.index = null;
+		}
+		else if( index.equals( "kd" ) || index.equals( "vp" ) || index.equals( "lsh" ) ) {
+			this.index = index;
+		}
+		else {
+			throw new Exception("Error: unknown neighbor index " + index + "!");
+		}
+	}
+	/**
+	 * Replace the sliding window; 0 keeps every example
+	 * @param window - the most training examples kept by add
+	 * @throws Exception
+	 */
+	public void setWindow( int window ) throws Exception {
+		if( window < 0 ) {
+			throw new Exception("Error: invalid window size detected!");
+		}
+		this.window = window;
+	}
+	/**
+	 * Replace the prototype reduction; enn applies Wilson's editing, cnn applies Hart's condensing,
+	 * enn+cnn applies both, none keeps every training example
+	 * @param reduce
+	 * @throws Exception
+	 */
+	public void setReduce( String reduce ) throws Exception {
+		if( reduce.equals( "none" ) ) {
+			this.reduce = null;
+		}
+		else if( reduce.equals( "enn" ) || reduce.equals( "cnn" ) || reduce.equals( "enn+cnn" ) ) {
+			this.reduce = reduce;
+		}
+		else {
+			throw new Exception("Error: unknown prototype reduction " + reduce + "!");
+		}
+	}
 	/**
 	 * Main method
 	 * @param args
@@ -158,6 +505,13 @@ public class IBk extends Classifier implements Serializable, OptionHandler {
 			Evaluator evaluator = new Evaluator( new IBk(), args );
 			Performance performance = evaluator.evaluate();
 			System.out.println( performance );
+			if( evaluator.getPerformances() != null ) {
+				// print the accuracy of every k when -kmax is set
+				Performance[] performances = evaluator.getPerformances();
+				for(int k = 1; k <= performances.length; k++) {
+					System.out.println( "k = " + k + ": Accuracy = " + Math.round( performances[ k - 1 ].getAccuracy() * 10000.00 ) / 100.00 + "%" );
+				}
+			}
 		} // try
 		catch ( Exception e ) {
 			System.out.println( e.getMessage() );
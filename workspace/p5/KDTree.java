@@ -0,0 +1,220 @@
+import java.util.Arrays;
+
+/*
+ * KDTree.java
+ * Copyright (c) 2018 Georgetown University.  All Rights Reserved.
+ */
+
+public class KDTree extends NeighborSearch {
+	protected static final int LEAF_SIZE = 8;	// maximum number of examples in a leaf
+
+	protected int[] numericAttrs;	// attributes that span the tree's dimensions
+	protected double[][] points;	// numeric coordinates of each training example
+	protected int[] perm;			// training-set positions when the tree was built, grouped by leaf
+	// nodes are stored in parallel arrays; a node with splitDim == -1 is a leaf over perm[lo, hi)
+	protected int[] lo;
+	protected int[] hi;
+	protected int[] splitDim;
+	protected double[] splitVal;
+	protected int[] left;
+	protected int[] right;
+	protected int numNodes = 0;
+
+	/**
+	 * Default constructor
+	 */
+	public KDTree() {
+
+	}
+	/**
+	 * Builds the tree over the numeric attributes of a given scaled training set
+	 * @param dataset
+	 * @throws Exception
+	 */
+	public void build( DataSet dataset ) throws Exception {
+		super.build( dataset );
+		int numNumeric = 0;
+		for(int j = 0; j < this.numAttrs; j++) {
+			numNumeric += this.isNumeric[ j ] ? 1 : 0;
+		}
+		this.numericAttrs = new int[ numNumeric ];
+		for(int j = 0, d = 0; j < this.numAttrs; j++) {
+			if( this.isNumeric[ j ] ) {
+				this.numericAttrs[ d++ ] = j;
+			}
+		}
+		Examples examples = dataset.getExamples();
+		int n = examples.size();
+		this.points = new double[ n ][ numNumeric ];
+		this.perm = new int[ n ];
+		for(int i = 0; i < n; i++) {
+			for(int d = 0; d < numNumeric; d++) {
+				this.points[ i ][ d ] = examples.get( i ).getValue( this.numericAttrs[ d ] );
+			}
+			this.perm[ i ] = i;
+		}
+		int capacity = 2 * ( n / LEAF_SIZE + 1 ) + 1;
+		this.lo = new int[ capacity ];
+		this.hi = new int[ capacity ];
+		this.splitDim = new int[ capacity ];
+		this.splitVal = new double[ capacity ];
+		this.left = new int[ capacity ];
+		this.right = new int[ capacity ];
+		this.numNodes = 0;
+		this.buildNode( 0, n );
+	}
+	/**
+	 * Returns the training-set positions of the k nearest neighbors of a scaled query, closest first. Ties
+	 * are broken by NeighborHeap.isCloser, as in LinearSearch, and a subtree is skipped only when its bound
+	 * is strictly farther than the k-th neighbor, so tied candidates are always offered; the result is the
+	 * same set of neighbors, in the same order, as the linear scan's. Examples appended since the tree was
+	 * built are compared with the query one by one, and removed ones are skipped.
+	 * @param query - the scaled query
+	 * @param k - the number of neighbors
+	 * @return the positions of at most k neighbors
+	 */
+	public int[] getNeighbors( Example query, int k ) throws Exception {
+		this.refresh();
+		double[] q = new double[ this.numericAttrs.length ];
+		for(int d = 0; d < q.length; d++) {
+			q[ d ] = query.getValue( this.numericAttrs[ d ] );
+		}
+		NeighborHeap heap = new NeighborHeap( k );
+		this.search( 0, query, q, new double[ q.length ], 0.0, heap );
+		this.offerAppended( query, heap );
+		return heap.getIndices();
+	}
+	/**
+	 * Recursively splits perm[from, to) at the median of its widest dimension
+	 * @param from
+	 * @param to
+	 * @return the index of the new node
+	 */
+	private int buildNode( int from, int to ) {
+		int node = this.numNodes++;
+		if( node >= this.lo.length ) {
+			this.grow();
+		}
+		this.lo[ node ] = from;
+		this.hi[ node ] = to;
+		this.splitDim[ node ] = -1;
+		if( to - from <= LEAF_SIZE || this.numericAttrs.length == 0 ) {
+			return node;
+		}
+		// split on the dimension with the largest spread
+		int bestDim = 0;
+		double bestSpread = -1;
+		for(int d = 0; d < this.numericAttrs.length; d++) {
+			double min = Double.POSITIVE_INFINITY;
+			double max = Double.NEGATIVE_INFINITY;
+			for(int i = from; i < to; i++) {
+				double v = this.points[ this.perm[ i ] ][ d ];
+				min = Math.min( min, v );
+				max = Math.max( max, v );
+			}
+			if( max - min > bestSpread ) {
+				bestSpread = max - min;
+				bestDim = d;
+			}
+		}
+		if( !( bestSpread > 0 ) ) {
+			// all points coincide (or are NaN); keep them in one leaf
+			return node;
+		}
+		int mid = ( from + to ) >>> 1;
+		this.select( from, to - 1, mid, bestDim );
+		this.splitDim[ node ] = bestDim;
+		this.splitVal[ node ] = this.points[ this.perm[ mid ] ][ bestDim ];
+		int l = this.buildNode( from, mid );
+		int r = this.buildNode( mid, to );
+		this.left[ node ] = l;
+		this.right[ node ] = r;
+		return node;
+	}
+	/**
+	 * Reorders perm[from, to] so that position nth holds its median along a dimension, with
+	 * smaller-or-equal values before it and larger-or-equal values after it
+	 * @param from
+	 * @param to
+	 * @param nth
+	 * @param dim
+	 */
+	private void select( int from, int to, int nth, int dim ) {
+		while( from < to ) {
+			double pivot = this.points[ this.perm[ ( from + to ) >>> 1 ] ][ dim ];
+			int i = from;
+			int j = to;
+			while( i <= j ) {
+				while( this.points[ this.perm[ i ] ][ dim ] < pivot ) {
+					i++;
+				}
+				while( this.points[ this.perm[ j ] ][ dim ] > pivot ) {
+					j--;
+				}
+				if( i <= j ) {
+					int tmp = this.perm[ i ];
+					this.perm[ i ] = this.perm[ j ];
+					this.perm[ j ] = tmp;
+					i++;
+					j--;
+				}
+			}
+			if( nth <= j ) {
+				to = j;
+			}
+			else if( nth >= i ) {
+				from = i;
+			}
+			else {
+				break;
+			}
+		}
+	}
+	/**
+	 * Visits a node, nearer child first, skipping subtrees whose lower bound is farther than the
+	 * current k-th neighbor. The lower bound only counts the numeric attributes, since nominal
+	 * attributes can add 0 to the distance; ties with the bound are still visited.
+	 * @param node
+	 * @param query - the full scaled query
+	 * @param q - the query's numeric coordinates
+	 * @param offsets - per-dimension distance from the query to the current cell
+	 * @param bound - squared distance from the query to the current cell
+	 * @param heap
+	 */
+	private void search( int node, Example query, double[] q, double[] offsets, double bound, NeighborHeap heap ) {
+		if( this.splitDim[ node ] == -1 ) {
+			Examples examples = this.dataset.getExamples();
+			for(int i = this.lo[ node ]; i < this.hi[ node ]; i++) {
+				int idx = this.getPosition( this.perm[ i ] );
+				if( idx != -1 ) {
+					heap.offer( this.distance( query, examples.get( idx ), heap.bound() ), idx );
+				}
+			}
+			return;
+		}
+		int dim = this.splitDim[ node ];
+		double diff = q[ dim ] - this.splitVal[ node ];
+		int near = ( diff < 0 ) ? this.left[ node ] : this.right[ node ];
+		int far = ( diff < 0 ) ? this.right[ node ] : this.left[ node ];
+		this.search( near, query, q, offsets, bound, heap );
+		double oldOffset = offsets[ dim ];
+		double farBound = bound - oldOffset * oldOffset + diff * diff;
+		if( farBound <= heap.bound() ) {
+			offsets[ dim ] = diff;
+			this.search( far, query, q, offsets, farBound, heap );
+			offsets[ dim ] = oldOffset;
+		}
+	}
+	/**
+	 * Doubles the capacity of the node arrays
+	 */
+	private void grow() {
+		int capacity = this.lo.length * 2;
+		this.lo = Arrays.copyOf( this.lo, capacity );
+		this.hi = Arrays.copyOf( this.hi, capacity );
+		this.splitDim = Arrays.copyOf( this.splitDim, capacity );
+		this.splitVal = Arrays.copyOf( this.splitVal, capacity );
+		this.left = Arrays.copyOf( this.left, capacity );
+		this.right = Arrays.copyOf( this.right, capacity );
+	}
+}
@@ -0,0 +1,203 @@
+import java.util.Arrays;
+
+/*
+ * KernelEstimator.java
+ * Copyright (c) 2018 Georgetown University.  All Rights Reserved.
+ */
+
+public class KernelEstimator extends Estimator {
+	protected static final double RADIUS = 4.0;		// the kernel is cut off this many bandwidths from its center
+	protected static final double PADDING = 0.25;	// the grid extends this fraction of the range past the samples
+	protected int bins = 256;						// number of grid points
+	protected double lo;							// position of the first grid point
+	protected double step;							// distance between grid points
+	protected double[] counts;						// linearly binned samples at each grid point
+	protected GaussianEstimator moments = new GaussianEstimator();	// mean and variance, for the bandwidth
+	// the density on the grid, computed by freeze() when the samples change
+	protected boolean frozen = false;
+	protected double bandwidth;
+	protected double[] logDensity;		// log of the smoothed density at each grid point
+
+	/**
+	 * Default constructor; the grid spans [0, 1], the range of a scaled attribute
+	 */
+	public KernelEstimator() {
+		this( 256, 0, 1 );
+	}
+	/**
+	 * Constructor. The grid is fixed here, from the range of every sample the estimator may see, so that
+	 * estimators of the same attribute share it and are merged and subtracted bin by bin; samples beyond
+	 * the range are binned at its nearest end.
+	 * @param bins - number of grid points, at least 2
+	 * @param min - the smallest sample
+	 * @param max - the largest sample
+	 */
+	public KernelEstimator( int bins, double min, double max ) {
+		this.bins = Math.max( 2, bins );
+		double span = ( max > min ) ? max - min : Math.abs( min ) + 1;
+		this.lo = min - PADDING * span;
+		this.step = ( max + PADDING * span - this.lo ) / ( this.bins - 1 );
+		this.counts = new double[ this.bins ];
+	}
+	/**
+	 * Adds a sample
+	 * @param x
+	 */
+	public void add( Number x ) throws Exception {
+		this.add( x.doubleValue() );
+	}
+	/**
+	 * Adds a sample
+	 * @param x
+	 */
+	public void add( double x ) throws Exception {
+		this.bin( x, 1 );
+		this.moments.add( x );
+		this.n++;
+		this.frozen = false;
+	}
+	/**
+	 * Removes a sample
+	 * @param x
+	 */
+	public void remove( Number x ) throws Exception {
+		this.remove( x.doubleValue() );
+	}
+	/**
+	 * Removes a sample, subtracting it from the bins it was added to
+	 * @param x
+	 */
+	public void remove( double x ) throws Exception {
+		if( this.n == 0 ) {
+			throw new Exception("Error: no sample to remove!");
+		}
+		this.moments.remove( x );
+		this.n--;
+		this.frozen = false;
+		if( this.n == 0 ) {
+			// drop the rounding left in the bins
+			Arrays.fill( this.counts, 0 );
+			return;
+		}
+		this.bin( x, -1 );
+	}
+	/**
+	 * Adds the samples of another kernel estimator on the same grid
+	 * @param other
+	 * @throws Exception
+	 */
+	public void merge( Estimator other ) throws Exception {
+		if( !( other instanceof KernelEstimator ) ) {
+			throw new Exception("Error: incompatible Estimator object passed-in!");
+		}
+		KernelEstimator kernel = (KernelEstimator) other;
+		if( kernel.bins != this.bins || kernel.lo != this.lo || kernel.step != this.step ) {
+			throw new Exception("Error: kernel density estimators on different grids cannot be merged!");
+		}
+		for(int g = 0; g < this.bins; g++) {
+			this.counts[ g ] += kernel.counts[ g ];
+		}
+		this.moments.merge( kernel.moments );
+		this.n += kernel.n;
+		this.frozen = false;
+	}
+	/**
+	 * Computes the density on the grid once, in time that depends on the number of bins but not of
+	 * samples. The binned samples are smoothed with a Gaussian kernel whose bandwidth follows Silverman's
+	 * rule, 1.06 sigma n^(-1/5), but is never narrower than a grid step.
+	 */
+	public void freeze() {
+		if( this.frozen ) {
+			return;
+		}
+		this.frozen = true;
+		if( this.n == 0 ) {
+			this.logDensity = null;
+			return;
+		}
+		double sigma = Math.sqrt( this.moments.getVariance() );
+		double h = 1.06 * sigma * Math.pow( this.n, -0.2 );
+		// a single sample or a constant attribute gets the narrowest kernel
+		this.bandwidth = ( h > this.step ) ? h : this.step;
+		// discrete Gaussian kernel, normalized so that the smoothing keeps the mass
+		int radius = (int) Math.ceil( RADIUS * this.bandwidth / this.step );
+		double[] weights = new double[ 2 * radius + 1 ];
+		double total = 0;
+		for(int k = -radius; k <= radius; k++) {
+			double u = k * this.step / this.bandwidth;
+			weights[ k + radius ] = Math.exp( -0.5 * u * u );
+			total += weights[ k + radius ];
+		}
+		this.logDensity = new double[ this.bins ];
+		for(int g = 0; g < this.bins; g++) {
+			double smoothed = 0;
+			for(int k = Math.max( -radius, g - this.bins + 1 ); k <= Math.min( radius, g ); k++) {
+				smoothed += this.counts[ g - k ] * weights[ k + radius ];
+			}
+			double density = Math.max( 0, smoothed ) / ( total * this.n * this.step );
+			// gaps wider than the kernel get a tiny density instead of 0, so interpolation stays finite
+			this.logDensity[ g ] = Math.log( Math.max( density, Double.MIN_NORMAL ) );
+		}
+	}
+	/**
+	 * Adds a sample to the bins, splitting it between its two nearest grid points
+	 * @param x
+	 * @param weight - 1 to add the sample, -1 to remove it
+	 */
+	private void bin( double x, double weight ) {
+		double t = ( x - this.lo ) / this.step;
+		int g = Math.min( this.bins - 2, Math.max( 0, (int) t ) );
+		double f = Math.min( 1, Math.max( 0, t - g ) );
+		this.counts[ g ] += weight * ( 1 - f );
+		this.counts[ g + 1 ] += weight * f;
+	}
+	/**
+	 * Returns the bandwidth of the kernel, freezing the density first
+	 * @return bandwidth
+	 */
+	public double getBandwidth() {
+		this.freeze();
+		return this.bandwidth;
+	}
+	/**
+	 * Compute and return probability
+	 * @param x
+	 * @return probability
+	 */
+	public Double getProbability( Number x ) {
+		return this.getProbability( x.doubleValue() );
+	}
+	/**
+	 * Compute and return probability
+	 * @param x
+	 * @return probability
+	 */
+	public double getProbability( double x ) {
+		if( this.n == 0 ) {
+			return 0;
+		}
+		return Math.exp( this.getLogDensity( x ) );
+	}
+	/**
+	 * Compute and return the log of the probability by interpolating between the two nearest grid points;
+	 * values beyond the grid take the density at its nearest end
+	 * @param x
+	 * @return log density, or negative infinity if there are no samples
+	 */
+	public double getLogDensity( double x ) {
+		this.freeze();
+		if( this.n == 0 ) {
+			return Double.NEGATIVE_INFINITY;
+		}
+		double t = ( x - this.lo ) / this.step;
+		if( !( t > 0 ) ) {
+			return this.logDensity[ 0 ];
+		}
+		if( t >= this.bins - 1 ) {
+			return this.logDensity[ this.bins - 1 ];
+		}
+		int g = (int) t;
+		double f = t - g;
+		return this.logDensity[ g ] + f * ( this.logDensity[ g + 1 ] - this.logDensity[ g ] );
+	}
+}
@@ -0,0 +1,282 @@
+import java.util.Arrays;
+import java.util.Random;
+
+/*
+ * LSHSearch.java
+ * Copyright (c) 2018 Georgetown University.  All Rights Reserved.
+ */
+
+public class LSHSearch extends NeighborSearch {
+	protected int numTables = 8;		// number of hash tables
+	protected int numHashes = 4;		// number of hash functions concatenated in each table
+	protected double width = 0.5;		// bucket width of the random projections
+	protected long seed = 1;			// seed of the hash functions
+
+	protected int[] numericAttrs;		// attributes hashed with random projections
+	protected int[] nominalAttrs;		// attributes hashed with MinHash
+	protected double[][][] projections;	// [table][hash][numeric attribute] Gaussian directions
+	protected double[][] offsets;		// [table][hash] offsets in [0, width)
+	protected long[][] minHashSeeds;	// [table][hash] seeds of the MinHash functions
+	protected long[][] keys;			// [table][i] bucket keys, sorted
+	protected int[][] positions;		// [table][i] training-set positions when the tables were built, in the order of keys
+	protected long[][] appendedKeys;	// [table][i] bucket keys of the examples appended since the tables were built
+	protected int numAppended = 0;		// number of examples appended since the tables were built
+
+	/**
+	 * Default constructor
+	 */
+	public LSHSearch() {
+
+	}
+	/**
+	 * Constructor
+	 * @param numTables - number of hash tables
+	 * @param numHashes - number of hash functions per table
+	 * @param width - bucket width of the random projections
+	 * @throws Exception
+	 */
+	public LSHSearch( int numTables, int numHashes, double width ) throws Exception {
+		if( numTables <= 0 || numHashes <= 0 || !( width > 0 ) ) {
+			throw new Exception("Error: invalid LSH parameters passed-in!");
+		}
+		this.numTables = numTables;
+		this.numHashes = numHashes;
+		this.width = width;
+	}
+	/**
+	 * Draws the hash functions and hashes every example of a given scaled training set into each table.
+	 * Numeric attributes are hashed by rounding random Gaussian projections to buckets of the given width;
+	 * nominal attributes are hashed by MinHash over the set of (attribute, value) pairs.
+	 * @param dataset
+	 * @throws Exception
+	 */
+	public void build( DataSet dataset ) throws Exception {
+		super.build( dataset );
+		int numNumeric = 0;
+		for(int j = 0; j < this.numAttrs; j++) {
+			numNumeric += this.isNumeric[ j ] ? 1 : 0;
+		}
+		this.numericAttrs = new int[ numNumeric ];
+		this.nominalAttrs = new int[ this.numAttrs - numNumeric ];
+		for(int j = 0, d = 0, m = 0; j < this.numAttrs; j++) {
+			if( this.isNumeric[ j ] ) {
+				this.numericAttrs[ d++ ] = j;
+			}
+			else {
+				this.nominalAttrs[ m++ ] = j;
+			}
+		}
+		Random random = new Random( this.seed );
+		this.projections = new double[ this.numTables ][ this.numHashes ][ numNumeric ];
+		this.offsets = new double[ this.numTables ][ this.numHashes ];
+		this.minHashSeeds = new long[ this.numTables ][ this.numHashes ];
+		for(int t = 0; t < this.numTables; t++) {
+			for(int h = 0; h < this.numHashes; h++) {
+				for(int d = 0; d < numNumeric; d++) {
+					this.projections[ t ][ h ][ d ] = random.nextGaussian();
+				}
+				this.offsets[ t ][ h ] = random.nextDouble() * this.width;
+				this.minHashSeeds[ t ][ h ] = random.nextLong();
+			}
+		}
+		Examples examples = dataset.getExamples();
+		int n = examples.size();
+		this.keys = new long[ this.numTables ][];
+		this.positions = new int[ this.numTables ][];
+		for(int t = 0; t < this.numTables; t++) {
+			long[] tableKeys = new long[ n ];
+			for(int i = 0; i < n; i++) {
+				tableKeys[ i ] = this.hash( t, examples.get( i ) );
+			}
+			// sort positions by key; the sort is stable, so ties stay in position order
+			int[] order = new int[ n ];
+			for(int i = 0; i < n; i++) {
+				order[ i ] = i;
+			}
+			sortByKey( tableKeys, order );
+			this.keys[ t ] = tableKeys;
+			this.positions[ t ] = order;
+		}
+		this.appendedKeys = new long[ this.numTables ][ 16 ];
+		this.numAppended = 0;
+	}
+	/**
+	 * Sorts keys in ascending signed order and applies the same permutation to values, with a stable
+	 * least-significant-digit radix sort over the eight bytes of each key; digits that every key shares
+	 * are skipped
+	 * @param keys
+	 * @param values
+	 */
+	private static void sortByKey( long[] keys, int[] values ) {
+		int n = keys.length;
+		long[] keyBuffer = new long[ n ];
+		int[] valueBuffer = new int[ n ];
+		int[] counts = new int[ 257 ];
+		for(int shift = 0; shift < 64; shift += 8) {
+			Arrays.fill( counts, 0 );
+			for(int i = 0; i < n; i++) {
+				counts[ digit( keys[ i ], shift ) + 1 ]++;
+			}
+			if( n == 0 || counts[ digit( keys[ 0 ], shift ) + 1 ] == n ) {
+				continue;
+			}
+			for(int d = 0; d < 256; d++) {
+				counts[ d + 1 ] += counts[ d ];
+			}
+			for(int i = 0; i < n; i++) {
+				int pos = counts[ digit( keys[ i ], shift ) ]++;
+				keyBuffer[ pos ] = keys[ i ];
+				valueBuffer[ pos ] = values[ i ];
+			}
+			System.arraycopy( keyBuffer, 0, keys, 0, n );
+			System.arraycopy( valueBuffer, 0, values, 0, n );
+		}
+	}
+	/**
+	 * Returns a byte of a key, with the sign bit flipped in the top byte so that negative keys sort first
+	 * @param key
+	 * @param shift - position of the byte in bits
+	 * @return the byte, from 0 to 255
+	 */
+	private static int digit( long key, int shift ) {
+		return (int) ( ( ( key ^ Long.MIN_VALUE ) >>> shift ) & 0xff );
+	}
+	/**
+	 * Hashes an example appended to the training set into each table; the tables are rebuilt once
+	 * enough examples have been appended and removed
+	 * @param example - the appended scaled example
+	 * @throws Exception
+	 */
+	public void add( Example example ) throws Exception {
+		super.add( example );
+		for(int t = 0; t < this.numTables; t++) {
+			if( this.numAppended == this.appendedKeys[ t ].length ) {
+				this.appendedKeys[ t ] = Arrays.copyOf( this.appendedKeys[ t ], this.numAppended * 2 );
+			}
+			this.appendedKeys[ t ][ this.numAppended ] = this.hash( t, example );
+		}
+		this.numAppended++;
+	}
+	/**
+	 * Returns the training-set positions of approximately the k nearest neighbors of a scaled query, closest
+	 * first. Candidates are the examples sharing a bucket with the query in any table, ranked by their exact
+	 * distance; if fewer than k candidates are found, every example is ranked instead. The candidates are
+	 * the same as if the tables were rebuilt after every example appended or removed.
+	 * @param query - the scaled query
+	 * @param k - the number of neighbors
+	 * @return the positions of at most k neighbors
+	 */
+	public int[] getNeighbors( Example query, int k ) throws Exception {
+		this.refresh();
+		int[] candidates = new int[ 16 ];
+		int numCandidates = 0;
+		for(int t = 0; t < this.numTables; t++) {
+			long key = this.hash( t, query );
+			long[] tableKeys = this.keys[ t ];
+			for(int i = firstIndex( tableKeys, key ); i < tableKeys.length && tableKeys[ i ] == key; i++) {
+				int position = this.getPosition( this.positions[ t ][ i ] );
+				if( position == -1 ) {
+					continue;
+				}
+				if( numCandidates == candidates.length ) {
+					candidates = Arrays.copyOf( candidates, candidates.length * 2 );
+				}
+				candidates[ numCandidates++ ] = position;
+			}
+			for(int a = 0; a < this.numAppended; a++) {
+				int position = this.getPosition( this.numIndexed + a );
+				if( this.appendedKeys[ t ][ a ] != key || position == -1 ) {
+					continue;
+				}
+				if( numCandidates == candidates.length ) {
+					candidates = Arrays.copyOf( candidates, candidates.length * 2 );
+				}
+				candidates[ numCandidates++ ] = position;
+			}
+		}
+		Examples examples = this.dataset.getExamples();
+		NeighborHeap heap = new NeighborHeap( k );
+		Arrays.sort( candidates, 0, numCandidates );
+		int distinct = 0;
+		for(int i = 0; i < numCandidates; i++) {
+			if( i > 0 && candidates[ i ] == candidates[ i - 1 ] ) {
+				continue;
+			}
+			distinct++;
+			heap.offer( this.distance( query, examples.get( candidates[ i ] ), heap.bound() ), candidates[ i ] );
+		}
+		if( distinct < k ) {
+			// too few candidates; fall back to comparing with every example
+			heap = new NeighborHeap( k );
+			for(int i = 0; i < examples.size(); i++) {
+				heap.offer( this.distance( query, examples.get( i ), heap.bound() ), i );
+			}
+		}
+		return heap.getIndices();
+	}
+	/**
+	 * Returns false, since neighbors that share no bucket with the query are missed
+	 * @return false
+	 */
+	public boolean isExact() {
+		return false;
+	}
+	/**
+	 * Computes the bucket key of an example in a given table
+	 * @param t - the table
+	 * @param example
+	 * @return the bucket key
+	 */
+	private long hash( int t, Example example ) {
+		long key = t;
+		for(int h = 0; h < this.numHashes; h++) {
+			if( this.numericAttrs.length > 0 ) {
+				double[] a = this.projections[ t ][ h ];
+				double dot = this.offsets[ t ][ h ];
+				for(int d = 0; d < a.length; d++) {
+					dot += a[ d ] * example.getValue( this.numericAttrs[ d ] );
+				}
+				key = key * 31 + (long) Math.floor( dot / this.width );
+			}
+			if( this.nominalAttrs.length > 0 ) {
+				long min = Long.MAX_VALUE;
+				for(int m = 0; m < this.nominalAttrs.length; m++) {
+					int j = this.nominalAttrs[ m ];
+					min = Math.min( min, mix( this.minHashSeeds[ t ][ h ] ^ ( ( (long) j << 32 ) | ( (long) example.getValue( j ) & 0xffffffffL ) ) ) );
+				}
+				key = key * 31 + min;
+			}
+		}
+		return key;
+	}
+	/**
+	 * Scrambles the bits of a value (the finalizer of SplitMix64)
+	 * @param z
+	 * @return the scrambled value
+	 */
+	static long mix( long z ) {
+		z = ( z ^ ( z >>> 30 ) ) * 0xbf58476d1ce4e5b9L;
+		z = ( z ^ ( z >>> 27 ) ) * 0x94d049bb133111ebL;
+		return z ^ ( z >>> 31 );
+	}
+	/**
+	 * Returns the first index of a sorted array whose value is greater than or equal to x
+	 * @param values
+	 * @param x
+	 * @return the index, or values.length if there is none
+	 */
+	private static int firstIndex( long[] values, long x ) {
+		int lo = 0;
+		int hi = values.length;
+		while( lo < hi ) {
+			int mid = ( lo + hi ) >>> 1;
+			if( values[ mid ] >= x ) {
+				hi = mid;
+			}
+			else {
+				lo = mid + 1;
+			}
+		}
+		return lo;
+	}
+}
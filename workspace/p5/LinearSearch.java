@@ -0,0 +1,243 @@
+/*
+ * LinearSearch.java
+ * Copyright (c) 2018 Georgetown University.  All Rights Reserved.
+ */
+
+public class LinearSearch extends NeighborSearch {
+	protected static final int BLOCK_ROWS = 256;	// training examples compared with a batch of queries at a time
+
+	protected NominalBits bits = null;	// packed training set, when every attribute is nominal
+	protected double[] matrix;			// training set values, row-major, numAttrs per row with numeric attributes first
+	protected int[] order;				// attribute stored in each column of matrix
+	protected int numNumeric;			// number of numeric attributes
+	protected int first = 0;			// row of matrix holding the first training example
+
+	/**
+	 * Default constructor
+	 */
+	public LinearSearch() {
+
+	}
+	/**
+	 * Builds this search over a given scaled training set. The values are copied into one row-major array
+	 * for batches of queries; when every attribute is nominal, the examples are bit-packed instead so that
+	 * distances can be computed a word at a time.
+	 * @param dataset
+	 * @throws Exception
+	 */
+	public void build( DataSet dataset ) throws Exception {
+		super.build( dataset );
+		this.bits = null;
+		this.matrix = null;
+		boolean allNominal = this.numAttrs > 0;
+		for(int j = 0; j < this.numAttrs; j++) {
+			allNominal &= !this.isNumeric[ j ];
+		}
+		if( allNominal ) {
+			NominalBits packed = new NominalBits( dataset.getAttributes(), this.numAttrs );
+			if( packed.pack( dataset.getExamples() ) ) {
+				this.bits = packed;
+				return;
+			}
+		}
+		this.order = new int[ this.numAttrs ];
+		this.numNumeric = 0;
+		for(int j = 0; j < this.numAttrs; j++) {
+			if( this.isNumeric[ j ] ) {
+				this.order[ this.numNumeric++ ] = j;
+			}
+		}
+		for(int j = 0, c = this.numNumeric; j < this.numAttrs; j++) {
+			if( !this.isNumeric[ j ] ) {
+				this.order[ c++ ] = j;
+			}
+		}
+		Examples examples = dataset.getExamples();
+		this.first = 0;
+		this.matrix = new double[ examples.size() * this.numAttrs ];
+		for(int i = 0; i < examples.size(); i++) {
+			this.flatten( examples.get( i ), this.matrix, i * this.numAttrs );
+		}
+	}
+	/**
+	 * Returns the training-set positions of the k nearest neighbors of a scaled query, closest first,
+	 * by comparing the query with every training example
+	 * @param query - the scaled query
+	 * @param k - the number of neighbors
+	 * @return the positions of at most k neighbors
+	 */
+	public int[] getNeighbors( Example query, int k ) throws Exception {
+		if( this.matrix != null ) {
+			return this.getNeighbors( new Example[] { query }, k )[ 0 ];
+		}
+		NeighborHeap heap = new NeighborHeap( k );
+		Examples examples = this.dataset.getExamples();
+		long[] packedQ = null;
+		if( this.bits != null ) {
+			packedQ = new long[ this.bits.getNumWords() ];
+			if( !this.bits.pack( query, packedQ, 0 ) ) {
+				packedQ = null;
+			}
+		}
+		if( packedQ != null ) {
+			for(int i = 0; i < examples.size(); i++) {
+				heap.offer( this.bits.mismatches( packedQ, i, heap.bound() ), i );
+			}
+		}
+		else {
+			// a query with codes the packing does not cover
+			for(int i = 0; i < examples.size(); i++) {
+				heap.offer( this.distance( query, examples.get( i ), heap.bound() ), i );
+			}
+		}
+		return heap.getIndices();
+	}
+	/**
+	 * Returns the k nearest neighbors of each of a batch of scaled queries. The training set is streamed
+	 * once per batch rather than once per query: every block of training rows is compared with all the
+	 * queries while it is still in cache.
+	 * @param queries - the scaled queries
+	 * @param k - the number of neighbors
+	 * @return the positions of at most k neighbors of each query
+	 */
+	public int[][] getNeighbors( Example[] queries, int k ) throws Exception {
+		if( this.matrix == null ) {
+			return super.getNeighbors( queries, k );
+		}
+		int d = this.numAttrs;
+		int numeric = this.numNumeric;
+		int n = this.dataset.getExamples().size();
+		double[] batch = new double[ queries.length * d ];
+		NeighborHeap[] heaps = new NeighborHeap[ queries.length ];
+		for(int q = 0; q < queries.length; q++) {
+			this.flatten( queries[ q ], batch, q * d );
+			heaps[ q ] = new NeighborHeap( k );
+		}
+		for(int from = 0; from < n; from += BLOCK_ROWS) {
+			int to = Math.min( n, from + BLOCK_ROWS );
+			for(int q = 0; q < queries.length; q++) {
+				NeighborHeap heap = heaps[ q ];
+				int qOffset = q * d;
+				for(int i = from; i < to; i++) {
+					double bound = heap.bound();
+					double totalDist = 0;
+					int offset = ( this.first + i ) * d;
+					int j = 0;
+					for(; j < numeric; j++) {
+						double diff = batch[ qOffset + j ] - this.matrix[ offset + j ];
+						totalDist += diff * diff;
+					}
+					for(; j < d && totalDist <= bound; j++) {
+						totalDist += ( batch[ qOffset + j ] == this.matrix[ offset + j ] ) ? 0 : 1;
+					}
+					heap.offer( totalDist, i );
+				}
+			}
+		}
+		int[][] neighbors = new int[ queries.length ][];
+		for(int q = 0; q < queries.length; q++) {
+			neighbors[ q ] = heaps[ q ].getIndices();
+		}
+		return neighbors;
+	}
+	/**
+	 * Returns the k nearest neighbors of every training example. The distance is symmetric, so each pair of
+	 * rows is compared once and offered to the neighbors of both; a pair stops being compared only when it
+	 * is farther than both of their k-th neighbors.
+	 * @param k - the number of neighbors
+	 * @return the positions of at most k neighbors of each training example
+	 */
+	public int[][] getTrainingNeighbors( int k ) throws Exception {
+		if( this.matrix == null ) {
+			return super.getTrainingNeighbors( k );
+		}
+		int d = this.numAttrs;
+		int numeric = this.numNumeric;
+		int n = this.dataset.getExamples().size();
+		NeighborHeap[] heaps = new NeighborHeap[ n ];
+		for(int i = 0; i < n; i++) {
+			heaps[ i ] = new NeighborHeap( k );
+		}
+		// compare every block of rows with itself and the blocks after it
+		for(int from = 0; from < n; from += BLOCK_ROWS) {
+			int to = Math.min( n, from + BLOCK_ROWS );
+			for(int other = from; other < n; other += BLOCK_ROWS) {
+				int otherTo = Math.min( n, other + BLOCK_ROWS );
+				for(int i = from; i < to; i++) {
+					NeighborHeap heap = heaps[ i ];
+					int iOffset = ( this.first + i ) * d;
+					for(int j = Math.max( other, i ); j < otherTo; j++) {
+						NeighborHeap otherHeap = heaps[ j ];
+						double bound = Math.max( heap.bound(), otherHeap.bound() );
+						double totalDist = 0;
+						int offset = ( this.first + j ) * d;
+						int c = 0;
+						for(; c < numeric; c++) {
+							double diff = this.matrix[ iOffset + c ] - this.matrix[ offset + c ];
+							totalDist += diff * diff;
+						}
+						for(; c < d && totalDist <= bound; c++) {
+							totalDist += ( this.matrix[ iOffset + c ] == this.matrix[ offset + c ] ) ? 0 : 1;
+						}
+						heap.offer( totalDist, j );
+						if( j != i ) {
+							otherHeap.offer( totalDist, i );
+						}
+					}
+				}
+			}
+		}
+		int[][] neighbors = new int[ n ][];
+		for(int i = 0; i < n; i++) {
+			neighbors[ i ] = heaps[ i ].getIndices();
+		}
+		return neighbors;
+	}
+	/**
+	 * Appends the row of an example appended to the training set. Removed rows at the front are reclaimed,
+	 * and the array doubles when it is full, so appending takes amortized constant time.
+	 * @param example - the appended scaled example
+	 * @throws Exception
+	 */
+	public void add( Example example ) throws Exception {
+		if( this.bits != null ) {
+			if( !this.bits.append( example ) ) {
+				// the example holds a code the packing does not cover
+				this.build( this.dataset );
+			}
+			return;
+		}
+		int d = this.numAttrs;
+		int n = this.dataset.getExamples().size();
+		if( ( this.first + n ) * d > this.matrix.length ) {
+			// move the rows to the front, growing the array if they fill more than half of it
+			double[] moved = ( n * 2 * d > this.matrix.length ) ? new double[ Math.max( 16, 2 * n ) * d ] : this.matrix;
+			System.arraycopy( this.matrix, this.first * d, moved, 0, ( n - 1 ) * d );
+			this.matrix = moved;
+			this.first = 0;
+		}
+		this.flatten( example, this.matrix, ( this.first + n - 1 ) * d );
+	}
+	/**
+	 * Drops the row of the first training example
+	 */
+	public void removeFirst() {
+		if( this.bits != null ) {
+			this.bits.removeFirst();
+		}
+		else {
+			this.first++;
+		}
+	}
+	/**
+	 * Copies the non-class values of an example into a row of a flat array, in the column order of matrix
+	 * @param example
+	 * @param buffer
+	 * @param offset - the position of the row in the buffer
+	 */
+	private void flatten( Example example, double[] buffer, int offset ) {
+		for(int c = 0; c < this.numAttrs; c++) {
+			buffer[ offset + c ] = example.getValue( this.order[ c ] );
+		}
+	}
+}
@@ -0,0 +1,87 @@
+import java.io.File;
+
+/*
+ * LoaderCheck.java
+ * Copyright (c) 2018 Georgetown University.  All Rights Reserved.
+ */
+
+public class LoaderCheck {
+
+	/**
+	 * Checks that two data-sets hold the same attributes and the same values, bit for bit
+	 * @param expected - the data-set read by the Scanner path
+	 * @param actual - the data-set read by the mapped loader
+	 * @return a description of the first difference, or null if there is none
+	 */
+	private static String compare( DataSet expected, DataSet actual ) {
+		if( expected.getAttributes().size() != actual.getAttributes().size() ) {
+			return "attributes: " + expected.getAttributes().size() + " != " + actual.getAttributes().size();
+		}
+		Examples a = expected.getExamples();
+		Examples b = actual.getExamples();
+		int sizeA = ( a == null ) ? 0 : a.size();
+		int sizeB = ( b == null ) ? 0 : b.size();
+		if( sizeA != sizeB ) {
+			return "examples: " + sizeA + " != " + sizeB;
+		}
+		for(int i = 0; i < sizeA; i++) {
+			for(int j = 0; j < expected.getAttributes().size(); j++) {
+				double x = a.get( i ).getValue( j );
+				double y = b.get( i ).getValue( j );
+				if( Double.doubleToLongBits( x ) != Double.doubleToLongBits( y ) ) {
+					return "example " + i + ", attribute " + j + ": " + x + " != " + y;
+				}
+			}
+		}
+		return null;
+	}
+	/**
+	 * Loads a data-set file with DataSet.loadWithScanner and with the mapped loader, checks that both read
+	 * the same values, then reports the best time of each over a number of runs
+	 * @param args - file [runs] [threads of the mapped loader]
+	 */
+	public static void main( String[] args ) {
+		try {
+			if( args.length == 0 ) {
+				throw new Exception("Error: usage is java LoaderCheck file [runs] [threads]");
+			}
+			String filename = args[ 0 ];
+			int runs = ( args.length > 1 ) ? Integer.parseInt( args[ 1 ] ) : 5;
+			int threads = ( args.length > 2 ) ? Integer.parseInt( args[ 2 ] ) : 1;
+			if( runs <= 0 ) {
+				throw new Exception("Error: invalid number of runs detected!");
+			}
+			double megabytes = new File( filename ).length() / ( 1024.0 * 1024.0 );
+			long scannerBest = Long.MAX_VALUE;
+			long mappedBest = Long.MAX_VALUE;
+			DataSet scanned = null;
+			DataSet mapped = null;
+			for(int r = 0; r < runs; r++) {
+				// alternate the two paths, so that both see the same page cache
+				long start = System.nanoTime();
+				scanned = new DataSet();
+				scanned.loadWithScanner( filename );
+				scannerBest = Math.min( scannerBest, System.nanoTime() - start );
+				start = System.nanoTime();
+				mapped = new DataSet();
+				if( !mapped.load( filename, threads ) ) {
+					throw new Exception("Error: the mapped loader failed on " + filename + "!");
+				}
+				mappedBest = Math.min( mappedBest, System.nanoTime() - start );
+			}
+			String difference = compare( scanned, mapped );
+			System.out.println( filename + ": " + ( ( difference == null ) ? "same values" : "mismatch at " + difference ) );
+			System.out.printf( "Scanner: %dms (%.1f MB/s), mapped with %d thread(s): %dms (%.1f MB/s), best of %d%n",
+					scannerBest / 1000000, megabytes / ( scannerBest / 1e9 ), threads,
+					mappedBest / 1000000, megabytes / ( mappedBest / 1e9 ), runs );
+			if( difference != null ) {
+				System.exit( 1 );
+			}
+		} // try
+		catch ( Exception e ) {
+			System.out.println( e.getMessage() );
+			e.printStackTrace();
+			System.exit( 1 );
+		} // catch
+	} // LoaderCheck::main
+}
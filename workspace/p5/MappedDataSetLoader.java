@@ -0,0 +1,477 @@
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Scanner;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/*
+ * MappedDataSetLoader.java
+ * Copyright (c) 2018 Georgetown University.  All Rights Reserved.
+ */
+
+public class MappedDataSetLoader {
+
+	private static final long WINDOW_SIZE = 1L << 28;	// maximum number of bytes mapped at once
+	private static final long MAX_EXACT_MANTISSA = 1L << 53;	// largest mantissa that is exactly representable as a double
+	private static final double[] POWERS_OF_TEN = {
+		1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+		1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+	};
+	private static final byte[] EXAMPLES_KEYWORD = "@examples".getBytes();
+	private static final int MIN_CHUNK_SIZE = 1 << 20;	// chunks smaller than this are parsed without further splitting
+
+	private String filename;
+	private Charset charset = Charset.defaultCharset();	// same charset that Scanner( File ) uses
+	private Attributes attributes;
+	private boolean[] isNumeric;
+	private NominalTable[] nominalTables;
+	private int threads = 1;	// number of threads parsing the examples section
+
+	/**
+	 * Constructor
+	 * @param filename - the file from which to read
+	 */
+	public MappedDataSetLoader( String filename ) {
+		this.filename = filename;
+	}
+	/**
+	 * Constructor
+	 * @param filename - the file from which to read
+	 * @param threads - the number of threads parsing the examples section
+	 * @throws Exception - if the number of threads is invalid
+	 */
+	public MappedDataSetLoader( String filename, int threads ) throws Exception {
+		if( threads <= 0 ) {
+			throw new Exception("Error: invalid number of threads passed-in!");
+		}
+		this.filename = filename;
+		this.threads = threads;
+	}
+	/**
+	 * Loads the data-set header, attributes, and examples of the file into a given data-set
+	 * @param dataset - the data-set to fill
+	 * @throws Exception - if the file is not found or if a parse exception occurs
+	 */
+	public void load( DataSet dataset ) throws Exception {
+		if( dataset == null ) {
+			throw new Exception("Error: invalid DataSet object passed-in!");
+		}
+		RandomAccessFile file = null;
+		ForkJoinPool pool = null;
+		try {
+			file = new RandomAccessFile( this.filename, "r" );
+			FileChannel channel = file.getChannel();
+			long size = channel.size();
+			// parse the header; it always fits in the first window
+			MappedByteBuffer buffer = channel.map( FileChannel.MapMode.READ_ONLY, 0, Math.min( size, WINDOW_SIZE ) );
+			dataset.attributes = new Attributes();
+			long examplesStart = this.parseHeader( buffer, dataset );
+			if( examplesStart < 0 ) {
+				// no @examples section
+				return;
+			}
+			this.prepare( dataset.attributes );
+			dataset.examples = new Examples( dataset.attributes );
+			if( this.threads > 1 ) {
+				pool = new ForkJoinPool( this.threads );
+			}
+			// parse the examples window by window; every window ends on a line boundary
+			long position = examplesStart;
+			while( position < size ) {
+				int length = (int) Math.min( size - position, WINDOW_SIZE );
+				buffer = channel.map( FileChannel.MapMode.READ_ONLY, position, length );
+				int limit = length;
+				if( position + length < size ) {
+					limit = lastLineEnd( buffer, length );
+					if( limit == 0 ) {
+						throw new Exception("Error: example line is longer than the mapping window!");
+					}
+				}
+				if( pool == null ) {
+					this.parseExamples( buffer, 0, limit, dataset.examples );
+				}
+				else {
+					dataset.examples.append( this.parseExamples( pool, buffer, limit ) );
+				}
+				position += limit;
+			}
+		}
+		finally {
+			if( pool != null ) {
+				pool.shutdown();
+			}
+			if( file != null ) {
+				file.close();
+			}
+		}
+	}
+	/**
+	 * Parses the @dataset and @attribute lines and returns the offset of the first line after @examples
+	 * @param buffer
+	 * @param dataset
+	 * @return offset of the examples section, or -1 if the file has no @examples section
+	 * @throws Exception
+	 */
+	private long parseHeader( MappedByteBuffer buffer, DataSet dataset ) throws Exception {
+		int limit = buffer.limit();
+		int start = 0;
+		while( start < limit ) {
+			int end = start;
+			while( end < limit && buffer.get( end ) != '\n' ) {
+				end++;
+			}
+			byte[] bytes = new byte[ end - start ];
+			for(int i = 0; i < bytes.length; i++) {
+				bytes[ i ] = buffer.get( start + i );
+			}
+			String line = new String( bytes, this.charset ).trim();
+			start = end + 1;
+			if( line.startsWith( "@dataset" ) ) {
+				/* Dataset Section */
+				dataset.name = line.split(" ")[1].trim();
+			}
+			else if( line.contains( "@attribute" ) ) {
+				/* Attribute Section */
+				dataset.attributes.add( AttributeFactory.make( new Scanner( line ) ) );
+				dataset.attributes.setClassIndex( dataset.attributes.size() - 1 );
+			}
+			else if( line.startsWith( "@examples" ) ) {
+				/* Example Section */
+				return Math.min( start, limit );
+			}
+		}
+		return -1;
+	}
+	/**
+	 * Builds the per-attribute lookup structures used while parsing the examples
+	 * @param attributes
+	 */
+	private void prepare( Attributes attributes ) {
+		this.attributes = attributes;
+		this.isNumeric = new boolean[ attributes.size() ];
+		this.nominalTables = new NominalTable[ attributes.size() ];
+		for(int i = 0; i < attributes.size(); i++) {
+			if( attributes.get( i ) instanceof NumericAttribute ) {
+				this.isNumeric[ i ] = true;
+			}
+			else {
+				this.nominalTables[ i ] = new NominalTable( (NominalAttribute) attributes.get( i ), this.charset );
+			}
+		}
+	}
+	/**
+	 * Parses the example lines in [from, to) of a given buffer and adds them to examples
+	 * @param buffer
+	 * @param from
+	 * @param to
+	 * @param examples
+	 * @throws Exception
+	 */
+	private void parseExamples( MappedByteBuffer buffer, int from, int to, Examples examples ) throws Exception {
+		int numAttrs = this.isNumeric.length;
+		byte[] token = new byte[ 64 ];
+		int start = from;
+		while( start < to ) {
+			int end = start;
+			while( end < to && buffer.get( end ) != '\n' ) {
+				end++;
+			}
+			int lineEnd = end;
+			// trim the line the same way String.trim() does
+			while( start < lineEnd && buffer.get( start ) <= ' ' ) {
+				start++;
+			}
+			while( lineEnd > start && buffer.get( lineEnd - 1 ) <= ' ' ) {
+				lineEnd--;
+			}
+			if( start < lineEnd && !contains( buffer, start, lineEnd, EXAMPLES_KEYWORD ) ) {
+				Example example = new Example( numAttrs );
+				int pos = start;
+				while( pos < lineEnd ) {
+					// copy the next token
+					int len = 0;
+					while( pos < lineEnd && buffer.get( pos ) > ' ' ) {
+						if( len == token.length ) {
+							byte[] grown = new byte[ token.length * 2 ];
+							System.arraycopy( token, 0, grown, 0, len );
+							token = grown;
+						}
+						token[ len++ ] = buffer.get( pos++ );
+					}
+					while( pos < lineEnd && buffer.get( pos ) <= ' ' ) {
+						pos++;
+					}
+					int attrIdx = example.size();
+					if( attrIdx >= numAttrs ) {
+						throw new Exception("Error: example has more values than attributes!");
+					}
+					if( this.isNumeric[ attrIdx ] ) {
+						// numeric attribute value; store the numeric value
+						example.addValue( this.parseDouble( token, len ) );
+					}
+					else {
+						// nominal attribute value; find the index of the value and store that index
+						int valueIdx = this.nominalTables[ attrIdx ].getIndex( token, len );
+						if( valueIdx < 0 ) {
+							throw new Exception("Invalid value passed-in!");
+						}
+						example.addValue( valueIdx );
+					}
+				}
+				if( example.size() <= this.attributes.getClassIndex() ) {
+					throw new Exception("Error: example is missing its class label!");
+				}
+				examples.add( example );
+			}
+			start = end + 1;
+		}
+	}
+	/**
+	 * Parses the example lines in the first limit bytes of a given buffer on a pool; the
+	 * returned examples are in file order
+	 * @param pool
+	 * @param buffer
+	 * @param limit
+	 * @return the parsed examples
+	 * @throws Exception
+	 */
+	private Examples parseExamples( ForkJoinPool pool, MappedByteBuffer buffer, int limit ) throws Exception {
+		try {
+			return pool.invoke( new ChunkTask( buffer, 0, limit ) );
+		}
+		catch( RuntimeException e ) {
+			// unwrap the parse exception thrown inside the task
+			Throwable cause = e;
+			while( cause instanceof RuntimeException && cause.getCause() != null ) {
+				cause = cause.getCause();
+			}
+			if( cause instanceof Exception ) {
+				throw (Exception) cause;
+			}
+			throw e;
+		}
+	}
+	/**
+	 * Parses a decimal number without creating a String; falls back to Double.parseDouble for
+	 * anything that cannot be converted exactly (long mantissas, large exponents, NaN, hex, ...)
+	 * @param token
+	 * @param len
+	 * @return parsed value, identical to Double.parseDouble
+	 */
+	private double parseDouble( byte[] token, int len ) {
+		int pos = 0;
+		boolean negative = false;
+		if( pos < len && ( token[ pos ] == '-' || token[ pos ] == '+' ) ) {
+			negative = token[ pos ] == '-';
+			pos++;
+		}
+		long mantissa = 0;
+		int exponent = 0;
+		int digits = 0;
+		boolean exact = true;
+		while( pos < len && token[ pos ] >= '0' && token[ pos ] <= '9' ) {
+			mantissa = mantissa * 10 + ( token[ pos++ ] - '0' );
+			digits++;
+			exact &= mantissa <= MAX_EXACT_MANTISSA;
+		}
+		if( pos < len && token[ pos ] == '.' ) {
+			pos++;
+			while( pos < len && token[ pos ] >= '0' && token[ pos ] <= '9' ) {
+				mantissa = mantissa * 10 + ( token[ pos++ ] - '0' );
+				exponent--;
+				digits++;
+				exact &= mantissa <= MAX_EXACT_MANTISSA;
+			}
+		}
+		if( digits > 0 && pos < len && ( token[ pos ] == 'e' || token[ pos ] == 'E' ) ) {
+			pos++;
+			boolean negativeExp = false;
+			if( pos < len && ( token[ pos ] == '-' || token[ pos ] == '+' ) ) {
+				negativeExp = token[ pos ] == '-';
+				pos++;
+			}
+			int exp = 0;
+			int expDigits = 0;
+			while( pos < len && token[ pos ] >= '0' && token[ pos ] <= '9' && exp < 10000 ) {
+				exp = exp * 10 + ( token[ pos++ ] - '0' );
+				expDigits++;
+			}
+			exact &= expDigits > 0;
+			exponent += negativeExp ? -exp : exp;
+		}
+		if( !exact || digits == 0 || digits > 18 || pos != len || exponent < -22 || exponent > 22 ) {
+			return Double.parseDouble( new String( token, 0, len, this.charset ) );
+		}
+		// both operands are exact doubles, so a single multiplication/division is correctly rounded
+		double value = ( exponent < 0 ) ? mantissa / POWERS_OF_TEN[ -exponent ] : mantissa * POWERS_OF_TEN[ exponent ];
+		return negative ? -value : value;
+	}
+	/**
+	 * Returns the offset just past the last newline in the first length bytes of a given buffer
+	 * @param buffer
+	 * @param length
+	 * @return offset of the line boundary, or 0 if there is no newline
+	 */
+	static int lastLineEnd( MappedByteBuffer buffer, int length ) {
+		for(int i = length - 1; i >= 0; i--) {
+			if( buffer.get( i ) == '\n' ) {
+				return i + 1;
+			}
+		}
+		return 0;
+	}
+	/**
+	 * Returns the offset just past the first newline at or after a given offset
+	 * @param buffer
+	 * @param from
+	 * @param to
+	 * @return offset of the line boundary, or to if there is no newline
+	 */
+	private static int nextLineEnd( MappedByteBuffer buffer, int from, int to ) {
+		for(int i = from; i < to; i++) {
+			if( buffer.get( i ) == '\n' ) {
+				return i + 1;
+			}
+		}
+		return to;
+	}
+	/**
+	 * Checks if the bytes in [from, to) contain a given keyword
+	 * @param buffer
+	 * @param from
+	 * @param to
+	 * @param keyword
+	 * @return true if the keyword occurs, false otherwise
+	 */
+	private static boolean contains( MappedByteBuffer buffer, int from, int to, byte[] keyword ) {
+		for(int i = from; i <= to - keyword.length; i++) {
+			if( buffer.get( i ) != '@' ) {
+				continue;
+			}
+			int j = 1;
+			while( j < keyword.length && buffer.get( i + j ) == keyword[ j ] ) {
+				j++;
+			}
+			if( j == keyword.length ) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Fork/join task that splits a byte range in half on a line boundary until it is small
+	 * enough, parses the pieces, and joins the results left to right
+	 */
+	private class ChunkTask extends RecursiveTask<Examples> {
+		private MappedByteBuffer buffer;
+		private int from;
+		private int to;
+
+		/**
+		 * Constructor
+		 * @param buffer
+		 * @param from
+		 * @param to
+		 */
+		ChunkTask( MappedByteBuffer buffer, int from, int to ) {
+			this.buffer = buffer;
+			this.from = from;
+			this.to = to;
+		}
+		/**
+		 * Parses this chunk, splitting it first if it is large
+		 * @return the examples of this chunk in file order
+		 */
+		protected Examples compute() {
+			int mid = this.to;
+			if( this.to - this.from > MIN_CHUNK_SIZE ) {
+				mid = nextLineEnd( this.buffer, this.from + ( this.to - this.from ) / 2, this.to );
+			}
+			try {
+				if( mid < this.to ) {
+					ChunkTask right = new ChunkTask( this.buffer, mid, this.to );
+					right.fork();
+					Examples left = new ChunkTask( this.buffer, this.from, mid ).compute();
+					left.append( right.join() );
+					return left;
+				}
+				Examples examples = new Examples( attributes );
+				parseExamples( this.buffer, this.from, this.to, examples );
+				return examples;
+			}
+			catch( Exception e ) {
+				throw new RuntimeException( e );
+			}
+		}
+	}
+
+	/**
+	 * Open-addressing table that maps the encoded domain values of a nominal attribute to their indices
+	 */
+	private static class NominalTable {
+		private byte[][] keys;
+		private int[] indices;
+		private int mask;
+
+		/**
+		 * Constructor
+		 * @param attribute
+		 * @param charset
+		 */
+		NominalTable( NominalAttribute attribute, Charset charset ) {
+			int capacity = Integer.highestOneBit( Math.max( 2, attribute.size() ) * 2 ) * 2;
+			this.keys = new byte[ capacity ][];
+			this.indices = new int[ capacity ];
+			this.mask = capacity - 1;
+			for(int i = 0; i < attribute.size(); i++) {
+				byte[] key = attribute.getValue( i ).getBytes( charset );
+				int slot = hash( key, key.length ) & this.mask;
+				while( this.keys[ slot ] != null && !equals( this.keys[ slot ], key, key.length ) ) {
+					slot = ( slot + 1 ) & this.mask;
+				}
+				if( this.keys[ slot ] == null ) {
+					// keep the first occurrence, as NominalAttribute.getIndex does
+					this.keys[ slot ] = key;
+					this.indices[ slot ] = i;
+				}
+			}
+		}
+		/**
+		 * Returns the index of the value stored in the first len bytes of token
+		 * @param token
+		 * @param len
+		 * @return index of the value, or -1 if the value is not in the domain
+		 */
+		int getIndex( byte[] token, int len ) {
+			int slot = hash( token, len ) & this.mask;
+			while( this.keys[ slot ] != null ) {
+				if( equals( this.keys[ slot ], token, len ) ) {
+					return this.indices[ slot ];
+				}
+				slot = ( slot + 1 ) & this.mask;
+			}
+			return -1;
+		}
+		private static int hash( byte[] bytes, int len ) {
+			int h = 0x811c9dc5;
+			for(int i = 0; i < len; i++) {
+				h = ( h ^ bytes[ i ] ) * 0x01000193;
+			}
+			return h ^ ( h >>> 16 );
+		}
+		private static boolean equals( byte[] key, byte[] token, int len ) {
+			if( key.length != len ) {
+				return false;
+			}
+			for(int i = 0; i < len; i++) {
+				if( key[ i ] != token[ i ] ) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+}
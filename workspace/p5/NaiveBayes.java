@@ -1,5 +1,8 @@
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 /*
  * NaiveBayes.java
@@ -7,9 +10,30 @@ import java.util.ArrayList;
  */
 
 public class NaiveBayes extends Classifier implements Serializable, OptionHandler {
+	protected static final int SHARD_SIZE = 16384;	// largest number of examples counted by one partial model
+	protected int trainThreads = 1;	// number of threads that train partial models
+	protected boolean kernel = false;	// whether numeric attributes use binned kernel density estimators
+	protected int kernelBins = 256;	// number of grid points of each kernel density estimator
+	protected double[] kernelMins;	// [attribute] smallest training value, which fixes the kernel grid with -kde
+	protected double[] kernelMaxs;	// [attribute] largest training value, which fixes the kernel grid with -kde
+	protected int sketchAbove = 65536;	// nominal attributes with more values are counted in count-min sketches
+	protected int sketchWidth = 4096;	// counters per row of each count-min sketch
 	protected Attributes attributes;
 	protected CategoricalEstimator classDistribution;
 	protected ArrayList< ArrayList<Estimator> > classConditionalDistributions;
+	// the trained model compiled into flat tables for scoring; see compile()
+	protected volatile boolean compiled = false;	// whether the tables reflect the estimators; removing and merging clear it
+	protected int numClasses;
+	protected boolean[] isNumeric;	// [attribute] whether the attribute is numeric
+	protected double[] logPriors;	// [class] log P(class)
+	protected int[] offsets;		// [attribute] start of the attribute's block in logTable
+	protected int[] cardinality;	// [attribute] number of values of a nominal attribute
+	protected double[] logTable;	// [offset + value * numClasses + class] log P(value | class)
+	protected double[] means;		// [attribute * numClasses + class] mean of a numeric attribute
+	protected double[] invTwoVars;	// [attribute * numClasses + class] 1 / (2 var) of a numeric attribute
+	protected double[] logNorms;	// [attribute * numClasses + class] log( 1 / sqrt(2 pi var) ) of a numeric attribute
+	protected KernelEstimator[] kernels;	// [attribute * numClasses + class] density of a numeric attribute, with -kde
+	protected CountMinEstimator[] sketches;	// [attribute * numClasses + class] counts of a nominal attribute too large for logTable
 
 	/**
 	 * Default constructor
@@ -43,7 +67,7 @@ public class NaiveBayes extends Classifier implements Serializable, OptionHandle
 			for(int i = 0; i < exs.size(); i++) {
 				// append this prediction result to the performance
 				Example ex = exs.get(i);
-				int actualClass = ex.get( dataSet.getAttributes().getClassIndex() ).intValue();
+				int actualClass = (int) ex.getValue( dataSet.getAttributes().getClassIndex() );
 				perform.add( actualClass, this.getDistribution( ex ) );
 			}
 		}
@@ -62,7 +86,9 @@ public class NaiveBayes extends Classifier implements Serializable, OptionHandle
 		return Utils.maxIndex( this.getDistribution( example ) );
 	}
 	/**
-	 * Compute the distribution by comparing a given query with other examples
+	 * Compute the distribution by comparing a given query with other examples. The class scores are summed
+	 * in log space from the compiled tables, so they do not underflow on wide data-sets, and are normalized
+	 * into posterior probabilities with log-sum-exp.
 	 * @param query
 	 * @return double[] - distribution
 	 */
@@ -71,15 +97,156 @@ public class NaiveBayes extends Classifier implements Serializable, OptionHandle
 		if( example == null || example.isEmpty() ) {
 			throw new Exception("Error: invalid Example object passed-in!");
 		}
-		double[] dist = new double[ this.attributes.getClassAttribute().size() ];
-		for(int i = 0; i < this.attributes.getClassAttribute().size(); i++) {
-			double classLabel = 1;
-			for(int j = 0; j < this.attributes.size() - 1; j++) {
-				classLabel *= this.classConditionalDistributions.get(i).get(j).getProbability( example.get(j) );
+		if( !this.compiled ) {
+			this.recompile();
+		}
+		int c = this.numClasses;
+		double[] scores = this.logPriors.clone();
+		for(int j = 0; j < this.isNumeric.length; j++) {
+			double value = example.getValue(j);
+			if( this.isNumeric[j] && this.kernel ) {
+				int base = j * c;
+				for(int i = 0; i < c; i++) {
+					scores[i] += this.kernels[ base + i ].getLogDensity( value );
+				}
+			}
+			else if( this.isNumeric[j] ) {
+				int base = j * c;
+				for(int i = 0; i < c; i++) {
+					scores[i] += GaussianEstimator.logDensity( value, this.means[ base + i ], this.logNorms[ base + i ], this.invTwoVars[ base + i ] );
+				}
+			}
+			else {
+				int v = (int) value;
+				if( v < 0 || v >= this.cardinality[j] ) {
+					throw new Exception("Error: invalid nominal value " + value + " for attribute " + j + "!");
+				}
+				if( this.sketches != null && this.sketches[ j * c ] != null ) {
+					for(int i = 0; i < c; i++) {
+						scores[i] += Math.log( this.sketches[ j * c + i ].getProbability( v ) );
+					}
+					continue;
+				}
+				int base = this.offsets[j] + v * c;
+				for(int i = 0; i < c; i++) {
+					scores[i] += this.logTable[ base + i ];
+				}
+			}
+		}
+		return normalize( scores );
+	}
+	/**
+	 * Turns log scores into probabilities that sum to one, subtracting the largest score before exponentiating.
+	 * A NaN score (a point mass on one attribute and zero density on another) gets probability 0. Classes with
+	 * an infinite score, from a point mass at the query's value, share all of the mass; if every score is
+	 * negative infinity or NaN, every probability is 0.
+	 * @param scores - log scores, replaced by the probabilities
+	 * @return the probabilities
+	 */
+	protected static double[] normalize( double[] scores ) {
+		double max = Double.NEGATIVE_INFINITY;
+		for(int i = 0; i < scores.length; i++) {
+			if( scores[i] > max ) {
+				max = scores[i];
+			}
+		}
+		if( max == Double.NEGATIVE_INFINITY || max == Double.POSITIVE_INFINITY ) {
+			for(int i = 0; i < scores.length; i++) {
+				// with an infinite density, only the classes that reach it share the mass
+				scores[i] = ( scores[i] == max && max > 0 ) ? 1 : 0;
+			}
+			double total = 0;
+			for(int i = 0; i < scores.length; i++) {
+				total += scores[i];
+			}
+			for(int i = 0; i < scores.length && total > 0; i++) {
+				scores[i] /= total;
 			}
-			dist[ i ] = classLabel * this.classDistribution.getProbability( i );
+			return scores;
+		}
+		double total = 0;
+		for(int i = 0; i < scores.length; i++) {
+			scores[i] = ( scores[i] == scores[i] ) ? Math.exp( scores[i] - max ) : 0;
+			total += scores[i];
+		}
+		for(int i = 0; i < scores.length; i++) {
+			scores[i] /= total;
+		}
+		return scores;
+	}
+	/**
+	 * Compiles the trained estimators into flat tables: log probabilities of every nominal value and class,
+	 * and the mean, 1 / (2 var) and log normalizer of every numeric attribute and class
+	 */
+	protected void compile() {
+		int c = this.attributes.getClassAttribute().size();
+		int numAttrs = this.attributes.size() - 1;
+		this.numClasses = c;
+		this.isNumeric = new boolean[ numAttrs ];
+		this.offsets = new int[ numAttrs ];
+		this.cardinality = new int[ numAttrs ];
+		this.logPriors = new double[ c ];
+		this.sketches = null;
+		for(int i = 0; i < c; i++) {
+			this.logPriors[i] = Math.log( this.classDistribution.getProbability( (double) i ) );
+		}
+		int size = 0;
+		for(int j = 0; j < numAttrs; j++) {
+			this.isNumeric[j] = this.attributes.get(j) instanceof NumericAttribute;
+			if( !this.isNumeric[j] ) {
+				this.cardinality[j] = ( (NominalAttribute) this.attributes.get(j) ).size();
+				this.offsets[j] = size;
+				if( this.classConditionalDistributions.get(0).get(j) instanceof CountMinEstimator ) {
+					// sketched attributes are scored from their sketches, not from a table
+					if( this.sketches == null ) {
+						this.sketches = new CountMinEstimator[ numAttrs * c ];
+					}
+					for(int i = 0; i < c; i++) {
+						this.sketches[ j * c + i ] = (CountMinEstimator) this.classConditionalDistributions.get(i).get(j);
+					}
+					continue;
+				}
+				size += this.cardinality[j] * c;
+			}
+		}
+		this.logTable = new double[ size ];
+		this.means = new double[ numAttrs * c ];
+		this.invTwoVars = new double[ numAttrs * c ];
+		this.logNorms = new double[ numAttrs * c ];
+		this.kernels = this.kernel ? new KernelEstimator[ numAttrs * c ] : null;
+		for(int j = 0; j < numAttrs; j++) {
+			for(int i = 0; i < c; i++) {
+				Estimator estimator = this.classConditionalDistributions.get(i).get(j);
+				if( this.isNumeric[j] && this.kernel ) {
+					KernelEstimator density = (KernelEstimator) estimator;
+					density.freeze();
+					this.kernels[ j * c + i ] = density;
+				}
+				else if( this.isNumeric[j] ) {
+					// the estimator freezes its parameters; with no samples the density is 0 everywhere
+					GaussianEstimator gaussian = (GaussianEstimator) estimator;
+					int idx = j * c + i;
+					this.means[ idx ] = gaussian.getMean();
+					this.invTwoVars[ idx ] = gaussian.getInverseTwoVariance();
+					this.logNorms[ idx ] = gaussian.getLogNormalizer();
+				}
+				else if( !( estimator instanceof CountMinEstimator ) ) {
+					for(int v = 0; v < this.cardinality[j]; v++) {
+						this.logTable[ this.offsets[j] + v * c + i ] = Math.log( estimator.getProbability( (double) v ) );
+					}
+				}
+			}
+		}
+		this.compiled = true;
+	}
+	/**
+	 * Compiles the tables if the estimators changed since they were last compiled; threads scoring the model
+	 * at once compile it only once
+	 */
+	private synchronized void recompile() {
+		if( !this.compiled ) {
+			this.compile();
 		}
-		return dist;
 	}
 	/**
 	 * Makes a deep copy of this class
@@ -89,25 +256,190 @@ public class NaiveBayes extends Classifier implements Serializable, OptionHandle
 		return (NaiveBayes) Utils.deepClone(this);
 	}
 	/**
-	 * Train using a given data-set
+	 * Makes a copy of this trained model with its own estimators; unlike clone, it shares the attributes
+	 * instead of serializing them
+	 * @return the copy
+	 * @throws Exception
+	 */
+	public NaiveBayes copy() throws Exception {
+		NaiveBayes copy = new NaiveBayes();
+		copy.trainThreads = this.trainThreads;
+		copy.kernel = this.kernel;
+		copy.kernelBins = this.kernelBins;
+		copy.kernelMins = this.kernelMins;
+		copy.kernelMaxs = this.kernelMaxs;
+		copy.sketchAbove = this.sketchAbove;
+		copy.sketchWidth = this.sketchWidth;
+		copy.attributes = this.attributes;
+		if( this.attributes != null ) {
+			copy.initialize();
+			copy.mergeCounts( this );
+			copy.compile();
+		}
+		return copy;
+	}
+	/**
+	 * Train using a given data-set. With more than one training thread, the examples are split into shards
+	 * of at most SHARD_SIZE examples whose partial models are counted on a pool and merged; the shards do not
+	 * depend on the number of threads, so neither does the model.
 	 * @param dataset
 	 */
 	public void train( DataSet dataset ) throws Exception {
 		// validation
 		if( dataset == null || dataset.getAttributes() == null || dataset.getAttributes().size() == 0 ||
 				dataset.getExamples() == null || dataset.getExamples().isEmpty() ) {
-			Examples examples = dataset.getExamples();
 			throw new Exception("Error: invalid DataSet object passed-in!");
 		}
-		// fill in classConditionalDistributions
 		this.attributes = dataset.getAttributes();	// set attributes
+		Examples examples = dataset.getExamples();
+		int[] classColumn = examples.getNominalColumn( this.attributes.getClassIndex() );	// class value of every example
+		if( this.kernel ) {
+			this.setKernelRanges( examples );
+		}
+		if( this.trainThreads <= 1 || examples.size() <= SHARD_SIZE ) {
+			this.initialize();
+			this.accumulate( examples, classColumn, 0, examples.size() );
+		}
+		else {
+			// build every column view up front, so the shards only read them
+			for(int j = 0; j < this.attributes.size() - 1; j++) {
+				if( this.attributes.get(j) instanceof NumericAttribute ) {
+					examples.getNumericColumn(j);
+				}
+				else {
+					examples.getNominalColumn(j);
+				}
+			}
+			ForkJoinPool pool = new ForkJoinPool( this.trainThreads );
+			try {
+				NaiveBayes model = pool.invoke( new ShardTask( examples, classColumn, 0, examples.size() ) );
+				this.classDistribution = model.classDistribution;
+				this.classConditionalDistributions = model.classConditionalDistributions;
+			}
+			catch( RuntimeException e ) {
+				// unwrap the exception thrown inside the task
+				Throwable cause = e;
+				while( cause instanceof RuntimeException && cause.getCause() != null ) {
+					cause = cause.getCause();
+				}
+				if( cause instanceof Exception ) {
+					throw (Exception) cause;
+				}
+				throw e;
+			}
+			finally {
+				pool.shutdown();
+			}
+		}
+		this.compile();
+	}
+	/**
+	 * Removes the examples of a given data-set, each of which was used to train this model; the result is
+	 * the model trained on the remaining examples
+	 * @param dataset
+	 * @throws Exception
+	 */
+	public void remove( DataSet dataset ) throws Exception {
+		if( dataset == null || dataset.getExamples() == null || this.attributes == null ) {
+			throw new Exception("Error: invalid DataSet object passed-in!");
+		}
+		if( !this.canRemove() ) {
+			// refuse before any count changes, so the model stays usable
+			throw new Exception("Error: examples cannot be removed from count-min sketches!");
+		}
+		Examples examples = dataset.getExamples();
+		if( !examples.isEmpty() ) {
+			this.deduct( examples, examples.getNominalColumn( this.attributes.getClassIndex() ) );
+		}
+		this.compiled = false;
+	}
+	/**
+	 * Checks if examples can be removed from this model; count-min sketches cannot remove them
+	 * @return true if remove is supported, false otherwise
+	 */
+	public boolean canRemove() {
+		return this.sketches == null;
+	}
+	/**
+	 * Checks, before training, if examples could be removed from a model trained on given attributes with
+	 * the current options; they cannot if a nominal attribute is large enough to be sketched
+	 * @param attributes
+	 * @return true if remove would be supported, false otherwise
+	 */
+	public boolean canRemove( Attributes attributes ) {
+		for(int j = 0; j < attributes.size() - 1; j++) {
+			if( attributes.get(j) instanceof NominalAttribute && ( (NominalAttribute) attributes.get(j) ).size() > this.sketchAbove ) {
+				return false;
+			}
+		}
+		return true;
+	}
+	/**
+	 * Removes an example that was used to train this model
+	 * @param example
+	 * @throws Exception
+	 */
+	public void remove( Example example ) throws Exception {
+		if( example == null || example.isEmpty() || this.attributes == null ) {
+			throw new Exception("Error: invalid Example object passed-in!");
+		}
+		if( !this.canRemove() ) {
+			throw new Exception("Error: examples cannot be removed from count-min sketches!");
+		}
+		int classValue = (int) example.getValue( this.attributes.getClassIndex() );
+		this.classDistribution.remove( classValue );
+		ArrayList<Estimator> estimators = this.classConditionalDistributions.get( classValue );
+		for(int j = 0; j < estimators.size(); j++) {
+			estimators.get(j).remove( example.getValue(j) );
+		}
+		// compiled by the next getDistribution, so that many removals pay for one compile
+		this.compiled = false;
+	}
+	/**
+	 * Adds the counts and sums of another model, trained on the same attributes, to this one; the result is
+	 * the model trained on the examples of both
+	 * @param other
+	 * @throws Exception
+	 */
+	public void merge( NaiveBayes other ) throws Exception {
+		if( other == null || other.attributes == null || this.attributes == null ||
+				other.attributes.size() != this.attributes.size() ||
+				other.attributes.getClassAttribute().size() != this.attributes.getClassAttribute().size() ) {
+			throw new Exception("Error: invalid NaiveBayes object passed-in!");
+		}
+		this.mergeCounts( other );
+		this.compiled = false;
+	}
+	/**
+	 * Merges the estimators of another model into this one without compiling the tables
+	 * @param other
+	 * @throws Exception
+	 */
+	private void mergeCounts( NaiveBayes other ) throws Exception {
+		this.classDistribution.merge( other.classDistribution );
+		for(int i = 0; i < this.classConditionalDistributions.size(); i++) {
+			for(int j = 0; j < this.classConditionalDistributions.get(i).size(); j++) {
+				this.classConditionalDistributions.get(i).get(j).merge( other.classConditionalDistributions.get(i).get(j) );
+			}
+		}
+	}
+	/**
+	 * Creates empty estimators for the attributes: a Gaussian for every numeric attribute and a categorical
+	 * one for every nominal attribute, per class
+	 */
+	protected void initialize() {
+		this.classConditionalDistributions = new ArrayList< ArrayList<Estimator> >();
 		for(int i = 0; i < this.attributes.getClassAttribute().size(); i++) {
 			ArrayList<Estimator> estimators = new ArrayList<Estimator>();
 			for(int j = 0; j < this.attributes.size() - 1; j++) {
 				if( this.attributes.get(j) instanceof NumericAttribute ) {
-					// for numeric attribute; use Gaussian Estimator
-					estimators.add( new GaussianEstimator() );
+					// for numeric attribute; use Gaussian Estimator, or a kernel density estimator with -kde
+					estimators.add( this.kernel ? new KernelEstimator( this.kernelBins, this.kernelMins[j], this.kernelMaxs[j] ) : new GaussianEstimator() );
 				} 
+				else if( ( (NominalAttribute)this.attributes.get(j) ).size() > this.sketchAbove ) {
+					// for nominal attribute with a huge domain; use a count-min sketch of bounded size
+					estimators.add( new CountMinEstimator( ( (NominalAttribute)this.attributes.get(j) ).size(), this.sketchWidth ) );
+				}
 				else {
 					// for nominal attribute; use Categorical Estimator
 					estimators.add( new CategoricalEstimator( ( (NominalAttribute)this.attributes.get(j) ).size() ) );
@@ -115,15 +447,96 @@ public class NaiveBayes extends Classifier implements Serializable, OptionHandle
 			}
 			this.classConditionalDistributions.add( estimators );
 		}
-		// start training using the examples in a given data-set
 		this.classDistribution = new CategoricalEstimator( this.attributes.getClassAttribute().size() );	// set CategoricalEstimator
-		for(int i = 0; i < dataset.getExamples().size(); i++) {
-			Example ex = dataset.getExamples().get(i);
-			int exClass = ex.get( this.attributes.getClassIndex() ).intValue();	// get this example class value
+	}
+	/**
+	 * Finds the range of every numeric attribute before any example is counted, so that the kernel density
+	 * estimators of all classes and shards share one grid per attribute; a removed example then leaves the
+	 * same bins as training without it
+	 * @param examples
+	 */
+	private void setKernelRanges( Examples examples ) {
+		this.kernelMins = new double[ this.attributes.size() - 1 ];
+		this.kernelMaxs = new double[ this.attributes.size() - 1 ];
+		for(int j = 0; j < this.kernelMins.length; j++) {
+			if( !( this.attributes.get(j) instanceof NumericAttribute ) ) {
+				continue;
+			}
+			double min = Double.POSITIVE_INFINITY;
+			double max = Double.NEGATIVE_INFINITY;
+			double[] column = examples.getNumericColumn(j);
+			for(int i = 0; i < column.length; i++) {
+				// comparisons skip NaN values
+				if( column[i] < min ) {
+					min = column[i];
+				}
+				if( column[i] > max ) {
+					max = column[i];
+				}
+			}
+			// with no value to range over, use that of a scaled attribute
+			this.kernelMins[j] = ( min <= max ) ? min : 0;
+			this.kernelMaxs[j] = ( min <= max ) ? max : 1;
+		}
+	}
+	/**
+	 * Adds the examples in [from, to) to the estimators, one attribute column at a time
+	 * @param examples
+	 * @param classColumn - the class value of every example
+	 * @param from
+	 * @param to
+	 * @throws Exception
+	 */
+	protected void accumulate( Examples examples, int[] classColumn, int from, int to ) throws Exception {
+		for(int i = from; i < to; i++) {
 			// add 1 to every category
-			this.classDistribution.add( exClass );
-			for(int j = 0; j < this.attributes.size() - 1; j++) {
-				this.classConditionalDistributions.get(exClass).get(j).add( ( ex.get(j) ) );
+			this.classDistribution.add( classColumn[i] );
+		}
+		for(int j = 0; j < this.attributes.size() - 1; j++) {
+			Estimator[] estimators = new Estimator[ this.classConditionalDistributions.size() ];
+			for(int c = 0; c < estimators.length; c++) {
+				estimators[c] = this.classConditionalDistributions.get(c).get(j);
+			}
+			if( this.attributes.get(j) instanceof NumericAttribute ) {
+				double[] column = examples.getNumericColumn(j);
+				for(int i = from; i < to; i++) {
+					estimators[ classColumn[i] ].add( column[i] );
+				}
+			}
+			else {
+				int[] column = examples.getNominalColumn(j);
+				for(int i = from; i < to; i++) {
+					estimators[ classColumn[i] ].add( column[i] );
+				}
+			}
+		}
+	}
+	/**
+	 * Removes the given examples from the estimators, one attribute column at a time
+	 * @param examples
+	 * @param classColumn - the class value of every example
+	 * @throws Exception
+	 */
+	protected void deduct( Examples examples, int[] classColumn ) throws Exception {
+		for(int i = 0; i < classColumn.length; i++) {
+			this.classDistribution.remove( classColumn[i] );
+		}
+		for(int j = 0; j < this.attributes.size() - 1; j++) {
+			Estimator[] estimators = new Estimator[ this.classConditionalDistributions.size() ];
+			for(int c = 0; c < estimators.length; c++) {
+				estimators[c] = this.classConditionalDistributions.get(c).get(j);
+			}
+			if( this.attributes.get(j) instanceof NumericAttribute ) {
+				double[] column = examples.getNumericColumn(j);
+				for(int i = 0; i < column.length; i++) {
+					estimators[ classColumn[i] ].remove( column[i] );
+				}
+			}
+			else {
+				int[] column = examples.getNominalColumn(j);
+				for(int i = 0; i < column.length; i++) {
+					estimators[ classColumn[i] ].remove( column[i] );
+				}
 			}
 		}
 	}
@@ -131,8 +544,37 @@ public class NaiveBayes extends Classifier implements Serializable, OptionHandle
 	 * Sets the options for this classifier
 	 * @param options - the arguments
 	 */
-	public void setOptions( String[] options ) {
-
+	public void setOptions( String[] options ) throws Exception {
+		// search for -train-threads and if it exists, train partial models on that many threads
+		if( Arrays.asList(options).contains("-train-threads") ) {
+			this.trainThreads = Integer.parseInt( options[Arrays.asList(options).indexOf("-train-threads") + 1] );
+			if( this.trainThreads <= 0 ) {
+				throw new Exception("Error: invalid number of training threads detected!");
+			}
+		}
+		// search for -kde and if it exists, estimate numeric attributes with binned kernel densities
+		if( Arrays.asList(options).contains("-kde") ) {
+			this.kernel = true;
+		}
+		if( Arrays.asList(options).contains("-kde-bins") ) {
+			this.kernelBins = Integer.parseInt( options[Arrays.asList(options).indexOf("-kde-bins") + 1] );
+			if( this.kernelBins < 2 ) {
+				throw new Exception("Error: invalid number of kernel density bins detected!");
+			}
+		}
+		// search for -sketch-above and if it exists, count nominal attributes with more values in sketches
+		if( Arrays.asList(options).contains("-sketch-above") ) {
+			this.sketchAbove = Integer.parseInt( options[Arrays.asList(options).indexOf("-sketch-above") + 1] );
+			if( this.sketchAbove < 0 ) {
+				throw new Exception("Error: invalid sketch threshold detected!");
+			}
+		}
+		if( Arrays.asList(options).contains("-sketch-width") ) {
+			this.sketchWidth = Integer.parseInt( options[Arrays.asList(options).indexOf("-sketch-width") + 1] );
+			if( this.sketchWidth <= 0 ) {
+				throw new Exception("Error: invalid sketch width detected!");
+			}
+		}
 	}
 	/**
 	 * Main method
@@ -149,4 +591,58 @@ public class NaiveBayes extends Classifier implements Serializable, OptionHandle
 			e.printStackTrace();
 		} // catch
 	} // NaiveBayes::main
-}
\ No newline at end of file
+
+	/**
+	 * Counts a range of the training examples into a partial model, splitting it first if it is large
+	 */
+	private class ShardTask extends RecursiveTask<NaiveBayes> {
+		private Examples examples;
+		private int[] classColumn;
+		private int from;
+		private int to;
+
+		/**
+		 * Constructor
+		 * @param examples
+		 * @param classColumn
+		 * @param from
+		 * @param to
+		 */
+		ShardTask( Examples examples, int[] classColumn, int from, int to ) {
+			this.examples = examples;
+			this.classColumn = classColumn;
+			this.from = from;
+			this.to = to;
+		}
+		/**
+		 * Counts this range, or its halves on the pool and merges them
+		 * @return the partial model of this range
+		 */
+		protected NaiveBayes compute() {
+			try {
+				if( this.to - this.from > SHARD_SIZE ) {
+					int mid = ( this.from + this.to ) >>> 1;
+					ShardTask right = new ShardTask( this.examples, this.classColumn, mid, this.to );
+					right.fork();
+					NaiveBayes left = new ShardTask( this.examples, this.classColumn, this.from, mid ).compute();
+					left.mergeCounts( right.join() );
+					return left;
+				}
+				NaiveBayes partial = new NaiveBayes();
+				partial.kernel = kernel;
+				partial.kernelBins = kernelBins;
+				partial.kernelMins = kernelMins;
+				partial.kernelMaxs = kernelMaxs;
+				partial.sketchAbove = sketchAbove;
+				partial.sketchWidth = sketchWidth;
+				partial.attributes = attributes;
+				partial.initialize();
+				partial.accumulate( this.examples, this.classColumn, this.from, this.to );
+				return partial;
+			}
+			catch( Exception e ) {
+				throw new RuntimeException( e );
+			}
+		}
+	}
+}
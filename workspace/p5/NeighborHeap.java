@@ -0,0 +1,121 @@
+/*
+ * NeighborHeap.java
+ * Copyright (c) 2018 Georgetown University.  All Rights Reserved.
+ */
+
+public class NeighborHeap {
+
+	private double[] distances;	// squared distances of the candidates, kept as a max-heap
+	private int[] indices;		// training-set positions of the candidates
+	private int size = 0;
+
+	/**
+	 * Constructor
+	 * @param k - the number of neighbors to keep
+	 */
+	public NeighborHeap( int k ) {
+		this.distances = new double[ k ];
+		this.indices = new int[ k ];
+	}
+	/**
+	 * Checks if the first candidate is closer than the second. Candidates at the same distance are
+	 * ordered by training-set position with later examples first. This differs from IBk's former slot
+	 * array, where a tied example replaced whichever slot first held the maximum, so the survivor
+	 * depended on slot order; a total order keeps results independent of the search structure and
+	 * makes the k nearest a prefix of the k+1 nearest.
+	 * @param d1
+	 * @param i1
+	 * @param d2
+	 * @param i2
+	 * @return true if the first candidate is closer, false otherwise
+	 */
+	public static boolean isCloser( double d1, int i1, double d2, int i2 ) {
+		return d1 < d2 || ( d1 == d2 && i1 > i2 );
+	}
+	/**
+	 * Offers a candidate; it is kept if the heap is not full or if it is closer than the farthest candidate.
+	 * Infinite and NaN distances are never kept, as in IBk's linear scan.
+	 * @param distance - squared distance of the candidate
+	 * @param index - training-set position of the candidate
+	 * @return true if the candidate was kept, false otherwise
+	 */
+	public boolean offer( double distance, int index ) {
+		if( !( distance < Double.POSITIVE_INFINITY ) ) {
+			return false;
+		}
+		if( this.size < this.distances.length ) {
+			// sift up
+			int pos = this.size++;
+			while( pos > 0 ) {
+				int parent = ( pos - 1 ) >>> 1;
+				if( !isCloser( this.distances[ parent ], this.indices[ parent ], distance, index ) ) {
+					break;
+				}
+				this.distances[ pos ] = this.distances[ parent ];
+				this.indices[ pos ] = this.indices[ parent ];
+				pos = parent;
+			}
+			this.distances[ pos ] = distance;
+			this.indices[ pos ] = index;
+			return true;
+		}
+		if( this.size == 0 || !isCloser( distance, index, this.distances[ 0 ], this.indices[ 0 ] ) ) {
+			return false;
+		}
+		// replace the farthest candidate and sift down
+		int pos = 0;
+		while( true ) {
+			int child = 2 * pos + 1;
+			if( child >= this.size ) {
+				break;
+			}
+			if( child + 1 < this.size && isCloser( this.distances[ child ], this.indices[ child ], this.distances[ child + 1 ], this.indices[ child + 1 ] ) ) {
+				child++;
+			}
+			if( !isCloser( distance, index, this.distances[ child ], this.indices[ child ] ) ) {
+				break;
+			}
+			this.distances[ pos ] = this.distances[ child ];
+			this.indices[ pos ] = this.indices[ child ];
+			pos = child;
+		}
+		this.distances[ pos ] = distance;
+		this.indices[ pos ] = index;
+		return true;
+	}
+	/**
+	 * Returns the squared distance a candidate must not exceed to possibly be kept; candidates at
+	 * exactly this distance may still be kept if they come later in the training set
+	 * @return the distance of the farthest candidate, or infinity if the heap is not full
+	 */
+	public double bound() {
+		return ( this.size < this.distances.length || this.size == 0 ) ? Double.POSITIVE_INFINITY : this.distances[ 0 ];
+	}
+	/**
+	 * Returns the number of candidates kept
+	 * @return the number of candidates
+	 */
+	public int size() {
+		return this.size;
+	}
+	/**
+	 * Returns the training-set positions of the candidates, closest first
+	 * @return the positions
+	 */
+	public int[] getIndices() {
+		int[] order = new int[ this.size ];
+		double[] dists = new double[ this.size ];
+		for(int i = 0; i < this.size; i++) {
+			// insertion sort; k is small
+			int pos = i;
+			while( pos > 0 && isCloser( this.distances[ i ], this.indices[ i ], dists[ pos - 1 ], order[ pos - 1 ] ) ) {
+				dists[ pos ] = dists[ pos - 1 ];
+				order[ pos ] = order[ pos - 1 ];
+				pos--;
+			}
+			dists[ pos ] = this.distances[ i ];
+			order[ pos ] = this.indices[ i ];
+		}
+		return order;
+	}
+}
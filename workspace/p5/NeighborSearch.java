@@ -0,0 +1,184 @@
+import java.io.Serializable;
+
+/*
+ * NeighborSearch.java
+ * Copyright (c) 2018 Georgetown University.  All Rights Reserved.
+ */
+
+public abstract class NeighborSearch extends Object implements Serializable {
+	protected DataSet dataset;		// the scaled training set
+	protected boolean[] isNumeric;	// whether each non-class attribute is numeric
+	protected int numAttrs;			// number of attributes that take part in the distance
+	protected int numIndexed = 0;	// number of training examples when the index was built
+	protected int numRemoved = 0;	// number of examples removed from the front since the index was built
+
+	/**
+	 * Default constructor
+	 */
+	public NeighborSearch() {
+
+	}
+	/**
+	 * Builds this index over a given scaled training set
+	 * @param dataset
+	 * @throws Exception
+	 */
+	public void build( DataSet dataset ) throws Exception {
+		if( dataset == null || dataset.getExamples() == null || dataset.getExamples().isEmpty() ) {
+			throw new Exception("Error: invalid DataSet object passed-in!");
+		}
+		this.dataset = dataset;
+		this.numIndexed = dataset.getExamples().size();
+		this.numRemoved = 0;
+		// as in IBk, the class is the last attribute and does not take part in the distance
+		this.numAttrs = dataset.getAttributes().size() - 1;
+		this.isNumeric = new boolean[ this.numAttrs ];
+		for(int j = 0; j < this.numAttrs; j++) {
+			this.isNumeric[ j ] = dataset.getAttributes().get( j ) instanceof NumericAttribute;
+		}
+	}
+	/**
+	 * Returns the training-set positions of the k nearest neighbors of a scaled query, closest first.
+	 * Neighbors at the same distance are ordered as NeighborHeap.isCloser orders them.
+	 * @param query - the scaled query
+	 * @param k - the number of neighbors
+	 * @return the positions of at most k neighbors
+	 * @throws Exception
+	 */
+	abstract public int[] getNeighbors( Example query, int k ) throws Exception;
+	/**
+	 * Returns the k nearest neighbors of each of a batch of scaled queries, as getNeighbors( query, k ) does
+	 * for a single query
+	 * @param queries - the scaled queries
+	 * @param k - the number of neighbors
+	 * @return the positions of at most k neighbors of each query
+	 * @throws Exception
+	 */
+	public int[][] getNeighbors( Example[] queries, int k ) throws Exception {
+		int[][] neighbors = new int[ queries.length ][];
+		for(int q = 0; q < queries.length; q++) {
+			neighbors[ q ] = this.getNeighbors( queries[ q ], k );
+		}
+		return neighbors;
+	}
+	/**
+	 * Returns the k nearest neighbors of every training example, as getNeighbors( queries, k ) does for the
+	 * training set itself; an example is among its own neighbors
+	 * @param k - the number of neighbors
+	 * @return the positions of at most k neighbors of each training example
+	 * @throws Exception
+	 */
+	public int[][] getTrainingNeighbors( int k ) throws Exception {
+		Examples examples = this.dataset.getExamples();
+		return this.getNeighbors( examples.toArray( new Example[ examples.size() ] ), k );
+	}
+	/**
+	 * Updates this search after an example was appended to the training set. By default the index is left
+	 * as it is: the examples appended since it was built are compared with every query (see offerAppended),
+	 * and the next query rebuilds it once they are too many.
+	 * @param example - the appended scaled example
+	 * @throws Exception
+	 */
+	public void add( Example example ) throws Exception {
+
+	}
+	/**
+	 * Updates this search after the first example was removed from the training set; the positions of the
+	 * remaining examples have shifted down by one. By default the index keeps the removed example, which
+	 * queries skip (see getPosition), until the next rebuild.
+	 * @throws Exception
+	 */
+	public void removeFirst() throws Exception {
+		this.numRemoved++;
+	}
+	/**
+	 * Rebuilds the index once the examples appended and removed since it was built outnumber sqrt( 16 n ).
+	 * Scanning the appended examples then costs about as much per query as the rebuild does per update.
+	 * @throws Exception
+	 */
+	protected void refresh() throws Exception {
+		int n = this.dataset.getExamples().size();
+		// the appended examples number n - ( numIndexed - numRemoved )
+		int pending = n - this.numIndexed + 2 * this.numRemoved;
+		if( pending > Math.sqrt( 16.0 * n ) ) {
+			this.build( this.dataset );
+		}
+	}
+	/**
+	 * Returns the current training-set position of an example indexed at a given position
+	 * @param indexed - its position when the index was built
+	 * @return the current position, or -1 if the example has been removed
+	 */
+	protected int getPosition( int indexed ) {
+		return ( indexed < this.numRemoved ) ? -1 : indexed - this.numRemoved;
+	}
+	/**
+	 * Returns the current training-set position of the first example appended since the index was built
+	 * @return the position
+	 */
+	protected int getFirstAppended() {
+		return Math.max( 0, this.numIndexed - this.numRemoved );
+	}
+	/**
+	 * Compares a query with every example appended since the index was built
+	 * @param query - the scaled query
+	 * @param heap - receives the appended examples
+	 */
+	protected void offerAppended( Example query, NeighborHeap heap ) {
+		Examples examples = this.dataset.getExamples();
+		for(int i = this.getFirstAppended(); i < examples.size(); i++) {
+			heap.offer( this.distance( query, examples.get( i ), heap.bound() ), i );
+		}
+	}
+	/**
+	 * Checks if this search always returns the exact nearest neighbors
+	 * @return true if it does, false if it approximates them
+	 */
+	public boolean isExact() {
+		return true;
+	}
+	/**
+	 * Computes IBk's squared distance between a query and a training example: squared differences on
+	 * numeric attributes plus 0/1 overlap on nominal attributes
+	 * @param query
+	 * @param example
+	 * @return squared distance
+	 */
+	protected double distance( Example query, Example example ) {
+		double totalDist = 0;
+		for(int j = 0; j < this.numAttrs; j++) {
+			double diff = query.getValue( j ) - example.getValue( j );
+			if( this.isNumeric[ j ] ) {
+				totalDist += diff * diff;
+			}
+			else {
+				totalDist += ( diff == 0 ) ? 0 : 1;
+			}
+		}
+		return totalDist;
+	}
+	/**
+	 * Computes the same squared distance as distance(query, example), but stops accumulating as soon as
+	 * it exceeds a bound. A candidate at exactly the bound is finished, since it may still win the tie.
+	 * @param query
+	 * @param example
+	 * @param bound - the distance of the current k-th neighbor
+	 * @return squared distance, or a partial sum greater than bound
+	 */
+	protected double distance( Example query, Example example, double bound ) {
+		double totalDist = 0;
+		for(int j = 0; j < this.numAttrs; j++) {
+			double diff = query.getValue( j ) - example.getValue( j );
+			if( this.isNumeric[ j ] ) {
+				totalDist += diff * diff;
+			}
+			else {
+				totalDist += ( diff == 0 ) ? 0 : 1;
+			}
+			if( totalDist > bound ) {
+				return totalDist;
+			}
+		}
+		return totalDist;
+	}
+}
@@ -0,0 +1,155 @@
+import java.io.Serializable;
+
+/*
+ * NominalBits.java
+ * Copyright (c) 2018 Georgetown University.  All Rights Reserved.
+ */
+
+public class NominalBits extends Object implements Serializable {
+	private int numAttrs;		// number of packed attributes
+	private int numWords;		// words per packed row
+	private int[] word;			// [attribute] word holding the attribute's field
+	private int[] shift;		// [attribute] position of the field within its word
+	private int[] cardinality;	// [attribute] number of values of the attribute
+	private long[] high;		// [word] the highest bit of every field
+	private long[] low;			// [word] the other bits of every field
+	private long[] rows;		// packed rows of the training examples, numWords each
+	private int first = 0;		// row of the first training example; rows before it were removed
+	private int size = 0;		// number of packed training examples
+
+	/**
+	 * Constructor. Lays out one field per attribute, just wide enough for its codes, without letting a
+	 * field straddle two words.
+	 * @param attributes - the attributes of the data-set; all but the class must be nominal
+	 * @param numAttrs - the number of attributes to pack
+	 * @throws Exception
+	 */
+	public NominalBits( Attributes attributes, int numAttrs ) throws Exception {
+		this.numAttrs = numAttrs;
+		this.word = new int[ numAttrs ];
+		this.shift = new int[ numAttrs ];
+		this.cardinality = new int[ numAttrs ];
+		int[] widths = new int[ numAttrs ];
+		int w = 0;
+		int used = 0;
+		for(int j = 0; j < numAttrs; j++) {
+			if( !( attributes.get( j ) instanceof NominalAttribute ) ) {
+				throw new Exception("Error: only nominal attributes can be packed!");
+			}
+			this.cardinality[ j ] = ( (NominalAttribute) attributes.get( j ) ).size();
+			widths[ j ] = Math.max( 1, 32 - Integer.numberOfLeadingZeros( this.cardinality[ j ] - 1 ) );
+			if( used + widths[ j ] > 64 ) {
+				w++;
+				used = 0;
+			}
+			this.word[ j ] = w;
+			this.shift[ j ] = used;
+			used += widths[ j ];
+		}
+		this.numWords = ( numAttrs == 0 ) ? 0 : w + 1;
+		this.high = new long[ this.numWords ];
+		this.low = new long[ this.numWords ];
+		for(int j = 0; j < numAttrs; j++) {
+			long field = ( 1L << widths[ j ] ) - 1;
+			long top = 1L << ( widths[ j ] - 1 );
+			this.high[ this.word[ j ] ] |= top << this.shift[ j ];
+			this.low[ this.word[ j ] ] |= ( field ^ top ) << this.shift[ j ];
+		}
+	}
+	/**
+	 * Packs every example of a given data-set
+	 * @param examples
+	 * @return false if some value is not a valid code, in which case nothing is packed
+	 */
+	public boolean pack( Examples examples ) {
+		long[] packed = new long[ examples.size() * this.numWords ];
+		for(int i = 0; i < examples.size(); i++) {
+			if( !this.pack( examples.get( i ), packed, i * this.numWords ) ) {
+				return false;
+			}
+		}
+		this.rows = packed;
+		this.first = 0;
+		this.size = examples.size();
+		return true;
+	}
+	/**
+	 * Packs an example appended to the training set
+	 * @param example
+	 * @return false if some value is not a valid code, in which case nothing is packed
+	 */
+	public boolean append( Example example ) {
+		long[] packed = new long[ this.numWords ];
+		if( !this.pack( example, packed, 0 ) ) {
+			return false;
+		}
+		if( ( this.first + this.size + 1 ) * this.numWords > this.rows.length ) {
+			// move the rows to the front, growing the array if they fill more than half of it
+			int capacity = Math.max( 16, 2 * ( this.size + 1 ) ) * this.numWords;
+			long[] moved = ( this.size + 1 ) * 2 * this.numWords > this.rows.length ? new long[ capacity ] : this.rows;
+			System.arraycopy( this.rows, this.first * this.numWords, moved, 0, this.size * this.numWords );
+			this.rows = moved;
+			this.first = 0;
+		}
+		System.arraycopy( packed, 0, this.rows, ( this.first + this.size ) * this.numWords, this.numWords );
+		this.size++;
+		return true;
+	}
+	/**
+	 * Drops the first training example; the others shift down by one position
+	 */
+	public void removeFirst() {
+		this.first++;
+		this.size--;
+	}
+	/**
+	 * Packs an example into a buffer
+	 * @param example
+	 * @param buffer
+	 * @param offset - the position of the example's first word in the buffer
+	 * @return false if some value is not a valid code
+	 */
+	public boolean pack( Example example, long[] buffer, int offset ) {
+		for(int w = 0; w < this.numWords; w++) {
+			buffer[ offset + w ] = 0;
+		}
+		for(int j = 0; j < this.numAttrs; j++) {
+			double value = example.getValue( j );
+			int code = (int) value;
+			if( code != value || code < 0 || code >= this.cardinality[ j ] ) {
+				return false;
+			}
+			buffer[ offset + this.word[ j ] ] |= (long) code << this.shift[ j ];
+		}
+		return true;
+	}
+	/**
+	 * Returns the number of words of a packed row
+	 * @return the number of words
+	 */
+	public int getNumWords() {
+		return this.numWords;
+	}
+	/**
+	 * Counts the attributes on which a packed query and a packed training example differ, stopping as soon
+	 * as the count exceeds a bound. Differing fields are found by XOR; adding the low bits of each field
+	 * into its highest bit sets that bit exactly when the field is non-zero, so one bitCount per word
+	 * counts the mismatches.
+	 * @param query - the packed query
+	 * @param i - the training-set position of the example
+	 * @param bound - the distance of the current kth neighbor
+	 * @return the number of mismatches, or a partial count greater than bound
+	 */
+	public int mismatches( long[] query, int i, double bound ) {
+		int offset = ( this.first + i ) * this.numWords;
+		int count = 0;
+		for(int w = 0; w < this.numWords; w++) {
+			long x = query[ w ] ^ this.rows[ offset + w ];
+			count += Long.bitCount( ( ( ( x & this.low[ w ] ) + this.low[ w ] ) | x ) & this.high[ w ] );
+			if( count > bound ) {
+				return count;
+			}
+		}
+		return count;
+	}
+}
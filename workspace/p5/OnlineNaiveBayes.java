@@ -0,0 +1,453 @@
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * OnlineNaiveBayes.java
+ * Copyright (c) 2018 Georgetown University.  All Rights Reserved.
+ */
+
+public class OnlineNaiveBayes extends NaiveBayes implements Serializable {
+	protected static final int STRIPES = 16;	// number of independently locked copies of the numeric moments
+	// counters that many threads update without a lock; each is striped internally, so concurrent updates
+	// rarely contend. The layout follows the compiled tables of NaiveBayes.
+	protected LongAdder[] classCounts;		// [class] number of examples
+	protected LongAdder[] valueCounts;		// [offset + value * numClasses + class] count of a nominal value
+	// Welford moments of the numeric attributes; a thread updates the stripe picked by its id under that
+	// stripe's lock, and the samples removed are kept apart, so that every stripe only ever adds
+	protected GaussianEstimator[][] added;		// [stripe][attribute * numClasses + class] samples added
+	protected GaussianEstimator[][] removed;	// [stripe][attribute * numClasses + class] samples removed
+	protected LongAdder version;				// number of changes to the numeric moments
+	protected transient volatile NumericParameters parameters = null;	// densities at some version, for scoring
+
+	/**
+	 * The numeric densities combined from every stripe at one version of the moments
+	 */
+	protected static class NumericParameters {
+		protected long version;
+		protected double[] means;		// [attribute * numClasses + class]
+		protected double[] logNorms;	// [attribute * numClasses + class]
+		protected double[] invTwoVars;	// [attribute * numClasses + class]
+	}
+
+	/**
+	 * Default constructor
+	 */
+	public OnlineNaiveBayes() {
+		super();
+	}
+	/**
+	 * Constructor
+	 * @param options - string arguments
+	 * @throws Exception
+	 */
+	public OnlineNaiveBayes( String[] options ) throws Exception {
+		super( options );
+	}
+	/**
+	 * Sets the options for this classifier; kernel density estimators cannot be updated by many threads
+	 * at once, so -kde is rejected
+	 * @param options - the arguments
+	 * @throws Exception
+	 */
+	public void setOptions( String args[] ) throws Exception {
+		super.setOptions( args );
+		if( this.kernel ) {
+			throw new Exception("Error: OnlineNaiveBayes does not support -kde!");
+		}
+	}
+	/**
+	 * Trains using a given data-set, replacing the counters; it must not run concurrently with update
+	 * @param dataset
+	 */
+	public void train( DataSet dataset ) throws Exception {
+		// validation
+		if( dataset == null || dataset.getAttributes() == null || dataset.getAttributes().size() == 0 ||
+				dataset.getExamples() == null ) {
+			throw new Exception("Error: invalid DataSet object passed-in!");
+		}
+		this.reset( dataset.getAttributes() );
+		Examples examples = dataset.getExamples();
+		for(int i = 0; i < examples.size(); i++) {
+			this.update( examples.get(i) );
+		}
+	}
+	/**
+	 * Replaces the counters with empty ones for given attributes
+	 * @param attributes
+	 */
+	private void reset( Attributes attributes ) {
+		this.attributes = attributes;
+		int c = this.attributes.getClassAttribute().size();
+		int numAttrs = this.attributes.size() - 1;
+		this.numClasses = c;
+		this.isNumeric = new boolean[ numAttrs ];
+		this.offsets = new int[ numAttrs ];
+		this.cardinality = new int[ numAttrs ];
+		int size = 0;
+		for(int j = 0; j < numAttrs; j++) {
+			this.isNumeric[j] = this.attributes.get(j) instanceof NumericAttribute;
+			if( !this.isNumeric[j] ) {
+				this.cardinality[j] = ( (NominalAttribute) this.attributes.get(j) ).size();
+				this.offsets[j] = size;
+				size += this.cardinality[j] * c;
+			}
+		}
+		this.classCounts = new LongAdder[ c ];
+		for(int i = 0; i < c; i++) {
+			this.classCounts[i] = new LongAdder();
+		}
+		this.valueCounts = new LongAdder[ size ];
+		for(int i = 0; i < size; i++) {
+			this.valueCounts[i] = new LongAdder();
+		}
+		this.added = new GaussianEstimator[ STRIPES ][ numAttrs * c ];
+		this.removed = new GaussianEstimator[ STRIPES ][ numAttrs * c ];
+		for(int s = 0; s < STRIPES; s++) {
+			for(int j = 0; j < numAttrs; j++) {
+				for(int i = 0; this.isNumeric[j] && i < c; i++) {
+					this.added[s][ j * c + i ] = new GaussianEstimator();
+					this.removed[s][ j * c + i ] = new GaussianEstimator();
+				}
+			}
+		}
+		this.version = new LongAdder();
+		this.parameters = null;
+	}
+	/**
+	 * Adds a labeled example to the model. Any number of threads may call this while others call
+	 * getDistribution; only the numeric moments of the calling thread's stripe are locked.
+	 * @param example
+	 * @throws Exception
+	 */
+	public void update( Example example ) throws Exception {
+		this.count( example, 1 );
+	}
+	/**
+	 * Removes a labeled example that was added to the model; like update, it is safe to call concurrently.
+	 * Removals are serialized among themselves, so that two of them never both take the last count.
+	 * @param example
+	 * @throws Exception - if the example is invalid or its class or nominal values have no count left
+	 */
+	public void remove( Example example ) throws Exception {
+		this.count( example, -1 );
+	}
+	/**
+	 * Removes the examples of a given data-set, each of which was added to the model; if one is refused,
+	 * the examples before it stay removed
+	 * @param dataset
+	 * @throws Exception
+	 */
+	public void remove( DataSet dataset ) throws Exception {
+		if( dataset == null || dataset.getExamples() == null ) {
+			throw new Exception("Error: invalid DataSet object passed-in!");
+		}
+		for(int i = 0; i < dataset.getExamples().size(); i++) {
+			this.remove( dataset.getExamples().get(i) );
+		}
+	}
+	/**
+	 * Adds an example to, or removes it from, the counters. The example is checked in full before any
+	 * counter changes, so a malformed one leaves the model as it was.
+	 * @param example
+	 * @param sign - 1 to add, -1 to remove
+	 * @throws Exception
+	 */
+	private void count( Example example, int sign ) throws Exception {
+		if( example == null || example.size() < this.attributes.size() || this.classCounts == null ) {
+			throw new Exception("Error: invalid Example object passed-in!");
+		}
+		int classValue = (int) example.getValue( this.attributes.getClassIndex() );
+		if( classValue < 0 || classValue >= this.numClasses ) {
+			throw new Exception("Error: invalid class value " + example.getValue( this.attributes.getClassIndex() ) + "!");
+		}
+		for(int j = 0; j < this.isNumeric.length; j++) {
+			int v = (int) example.getValue(j);
+			if( !this.isNumeric[j] && ( v < 0 || v >= this.cardinality[j] ) ) {
+				throw new Exception("Error: invalid nominal value " + example.getValue(j) + " for attribute " + j + "!");
+			}
+		}
+		if( sign > 0 ) {
+			this.apply( example, classValue, sign );
+			return;
+		}
+		// concurrent updates only raise the counts, so a count seen here cannot drop before the removal
+		synchronized( this.classCounts ) {
+			if( this.classCounts[ classValue ].sum() <= 0 ) {
+				throw new Exception("Error: no example of class " + classValue + " to remove!");
+			}
+			for(int j = 0; j < this.isNumeric.length; j++) {
+				if( !this.isNumeric[j] && this.valueCounts[ this.offsets[j] + (int) example.getValue(j) * this.numClasses + classValue ].sum() <= 0 ) {
+					throw new Exception("Error: no example with value " + example.getValue(j) + " for attribute " + j + " to remove!");
+				}
+			}
+			this.apply( example, classValue, sign );
+		}
+	}
+	/**
+	 * Updates the counters with a validated example
+	 * @param example
+	 * @param classValue
+	 * @param sign - 1 to add, -1 to remove
+	 * @throws Exception
+	 */
+	private void apply( Example example, int classValue, int sign ) throws Exception {
+		int c = this.numClasses;
+		boolean hasNumeric = false;
+		for(int j = 0; j < this.isNumeric.length; j++) {
+			if( this.isNumeric[j] ) {
+				hasNumeric = true;
+				continue;
+			}
+			this.valueCounts[ this.offsets[j] + (int) example.getValue(j) * c + classValue ].add( sign );
+		}
+		if( hasNumeric ) {
+			int s = (int) ( Thread.currentThread().getId() % STRIPES );
+			GaussianEstimator[] moments = ( sign > 0 ) ? this.added[s] : this.removed[s];
+			synchronized( this.added[s] ) {
+				for(int j = 0; j < this.isNumeric.length; j++) {
+					if( this.isNumeric[j] ) {
+						moments[ j * c + classValue ].add( example.getValue(j) );
+					}
+				}
+			}
+			this.version.increment();
+		}
+		// the class count goes last, so a concurrent reader rarely sees it ahead of the attribute counts
+		this.classCounts[ classValue ].add( sign );
+	}
+	/**
+	 * Checks, before training, if examples could be removed from a model trained on given attributes; the
+	 * counters are exact whatever the size of the nominal attributes, so they always can
+	 * @param attributes
+	 * @return true
+	 */
+	public boolean canRemove( Attributes attributes ) {
+		return true;
+	}
+	/**
+	 * Combines the numeric moments of every stripe into one Gaussian estimator per attribute and class
+	 * @return the estimators, [attribute * numClasses + class]
+	 * @throws Exception
+	 */
+	private GaussianEstimator[] combine() throws Exception {
+		int cells = this.isNumeric.length * this.numClasses;
+		GaussianEstimator[] total = new GaussianEstimator[ cells ];
+		GaussianEstimator[] gone = new GaussianEstimator[ cells ];
+		for(int k = 0; k < cells; k++) {
+			if( this.added[0][k] != null ) {
+				total[k] = new GaussianEstimator();
+				gone[k] = new GaussianEstimator();
+			}
+		}
+		for(int s = 0; s < STRIPES; s++) {
+			synchronized( this.added[s] ) {
+				for(int k = 0; k < cells; k++) {
+					if( total[k] != null ) {
+						total[k].merge( this.added[s][k] );
+						gone[k].merge( this.removed[s][k] );
+					}
+				}
+			}
+		}
+		for(int k = 0; k < cells; k++) {
+			if( total[k] != null ) {
+				total[k].subtract( gone[k] );
+			}
+		}
+		return total;
+	}
+	/**
+	 * Returns the numeric densities, recomputing them only if the moments changed since they were cached
+	 * @return the densities
+	 * @throws Exception
+	 */
+	private NumericParameters getParameters() throws Exception {
+		long current = this.version.sum();
+		NumericParameters cached = this.parameters;
+		if( cached != null && cached.version == current ) {
+			return cached;
+		}
+		// tagged with the version read before combining, so a change made meanwhile causes another refresh
+		GaussianEstimator[] total = this.combine();
+		NumericParameters fresh = new NumericParameters();
+		fresh.version = current;
+		fresh.means = new double[ total.length ];
+		fresh.logNorms = new double[ total.length ];
+		fresh.invTwoVars = new double[ total.length ];
+		for(int k = 0; k < total.length; k++) {
+			if( total[k] != null ) {
+				fresh.means[k] = total[k].getMean();
+				fresh.logNorms[k] = total[k].getLogNormalizer();
+				fresh.invTwoVars[k] = total[k].getInverseTwoVariance();
+			}
+		}
+		this.parameters = fresh;
+		return fresh;
+	}
+	/**
+	 * Computes the distribution of a given example from the current counters. Each counter is read once,
+	 * so updates made during the call may be seen for some attributes and not others; the result is the
+	 * same as the compiled NaiveBayes up to those updates. The numeric densities are cached until the
+	 * next update that changes them.
+	 * @param example
+	 * @return double[] - distribution
+	 */
+	public double[] getDistribution( Example example ) throws Exception {
+		if( example == null || example.isEmpty() || this.classCounts == null ) {
+			throw new Exception("Error: invalid Example object passed-in!");
+		}
+		int c = this.numClasses;
+		NumericParameters params = this.getParameters();
+		double[] classN = new double[ c ];
+		double total = 0;
+		for(int i = 0; i < c; i++) {
+			classN[i] = this.classCounts[i].sum();
+			total += classN[i];
+		}
+		double[] scores = new double[ c ];
+		for(int i = 0; i < c; i++) {
+			// add-one smoothing, as in CategoricalEstimator
+			scores[i] = Math.log( ( classN[i] + 1 ) / ( total + c ) );
+		}
+		for(int j = 0; j < this.isNumeric.length; j++) {
+			double value = example.getValue(j);
+			if( this.isNumeric[j] ) {
+				for(int i = 0; i < c; i++) {
+					int idx = j * c + i;
+					scores[i] += GaussianEstimator.logDensity( value, params.means[ idx ], params.logNorms[ idx ], params.invTwoVars[ idx ] );
+				}
+			}
+			else {
+				int v = (int) value;
+				if( v < 0 || v >= this.cardinality[j] ) {
+					throw new Exception("Error: invalid nominal value " + value + " for attribute " + j + "!");
+				}
+				int base = this.offsets[j] + v * c;
+				for(int i = 0; i < c; i++) {
+					scores[i] += Math.log( ( this.valueCounts[ base + i ].sum() + 1 ) / ( classN[i] + this.cardinality[j] ) );
+				}
+			}
+		}
+		return normalize( scores );
+	}
+	/**
+	 * Returns a NaiveBayes model holding the current counts, with compiled tables for fast batch scoring.
+	 * Updates made while it is taken may be partly included.
+	 * @return the snapshot
+	 * @throws Exception
+	 */
+	public NaiveBayes snapshot() throws Exception {
+		NaiveBayes snapshot = new NaiveBayes();
+		snapshot.trainThreads = this.trainThreads;
+		snapshot.sketchAbove = Integer.MAX_VALUE;	// the counts are exact, so keep them exact
+		snapshot.attributes = this.attributes;
+		if( this.classCounts == null ) {
+			return snapshot;
+		}
+		int c = this.numClasses;
+		snapshot.initialize();
+		GaussianEstimator[] total = this.combine();
+		for(int i = 0; i < c; i++) {
+			int n = (int) this.classCounts[i].sum();
+			snapshot.classDistribution.dist.set( i, n );
+			snapshot.classDistribution.n += n;
+		}
+		for(int i = 0; i < c; i++) {
+			ArrayList<Estimator> estimators = snapshot.classConditionalDistributions.get(i);
+			for(int j = 0; j < this.isNumeric.length; j++) {
+				if( this.isNumeric[j] ) {
+					estimators.get(j).merge( total[ j * c + i ] );
+				}
+				else {
+					CategoricalEstimator categorical = (CategoricalEstimator) estimators.get(j);
+					for(int v = 0; v < this.cardinality[j]; v++) {
+						int count = (int) this.valueCounts[ this.offsets[j] + v * c + i ].sum();
+						categorical.dist.set( v, count );
+						categorical.n += count;
+					}
+				}
+			}
+		}
+		snapshot.compile();
+		return snapshot;
+	}
+	/**
+	 * Makes a copy of this model with its own counters, which can be updated and scored online as this one
+	 * @return the copy
+	 * @throws Exception
+	 */
+	public NaiveBayes copy() throws Exception {
+		OnlineNaiveBayes copy = new OnlineNaiveBayes();
+		copy.trainThreads = this.trainThreads;
+		copy.attributes = this.attributes;
+		if( this.classCounts != null ) {
+			copy.reset( this.attributes );
+			copy.merge( this );
+		}
+		return copy;
+	}
+	/**
+	 * Adds the counts of another model trained on the same attributes to this one
+	 * @param other
+	 * @throws Exception
+	 */
+	public void merge( NaiveBayes other ) throws Exception {
+		if( other == null || other.attributes == null || this.attributes == null ||
+				other.attributes.size() != this.attributes.size() ||
+				other.attributes.getClassAttribute().size() != this.attributes.getClassAttribute().size() ) {
+			throw new Exception("Error: invalid NaiveBayes object passed-in!");
+		}
+		if( other.kernel ) {
+			throw new Exception("Error: kernel density estimators cannot be merged into Gaussian counters!");
+		}
+		if( other.sketches != null ) {
+			throw new Exception("Error: count-min sketches cannot be merged into exact counters!");
+		}
+		if( other instanceof OnlineNaiveBayes ) {
+			other = ( (OnlineNaiveBayes) other ).snapshot();
+		}
+		int c = this.numClasses;
+		int s = (int) ( Thread.currentThread().getId() % STRIPES );
+		for(int i = 0; i < c; i++) {
+			ArrayList<Estimator> estimators = other.classConditionalDistributions.get(i);
+			for(int j = 0; j < this.isNumeric.length; j++) {
+				if( this.isNumeric[j] ) {
+					synchronized( this.added[s] ) {
+						this.added[s][ j * c + i ].merge( estimators.get(j) );
+					}
+				}
+				else {
+					CategoricalEstimator categorical = (CategoricalEstimator) estimators.get(j);
+					for(int v = 0; v < this.cardinality[j]; v++) {
+						this.valueCounts[ this.offsets[j] + v * c + i ].add( categorical.dist.get(v) );
+					}
+				}
+			}
+			this.classCounts[i].add( other.classDistribution.dist.get(i) );
+		}
+		this.version.increment();
+	}
+	/**
+	 * Makes a deep copy of this class
+	 * @return Classifier
+	 */
+	public Classifier clone() {
+		return (OnlineNaiveBayes) Utils.deepClone(this);
+	}
+	/**
+	 * Main method
+	 * @param args
+	 */
+	public static void main( String[] args ) {
+		try {
+			Evaluator evaluator = new Evaluator( new OnlineNaiveBayes(), args );
+			Performance performance = evaluator.evaluate();
+			System.out.println( performance );
+		} // try
+		catch ( Exception e ) {
+			System.out.println( e.getMessage() );
+			e.printStackTrace();
+		} // catch
+	} // OnlineNaiveBayes::main
+}
@@ -1,5 +1,4 @@
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
 
 /*
  * Performance.java
@@ -16,12 +15,18 @@ public class Performance extends Object {
 	private int c = 0;				// number of classes
 	private int n = 0;				// number of predictions
 	private int m = 0;				// number of additions (number of performances added to the current Performance object)
-	private List<Double> prNeg = new ArrayList<Double>();
-	private List<Double> prPos = new ArrayList<Double>();
+	private double[] prNeg = new double[ 16 ];	// scores of the predictions of class 1
+	private double[] prPos = new double[ 16 ];	// scores of the predictions of class 0
+	private int numNeg = 0;
+	private int numPos = 0;
 	private Double avgAUC = null;
 	private double aucSum = 0.0;
 	private double aucSumSqr = 0.0;
 	private double totalF1 = 0.0;
+	private long recallFound = 0;	// neighbors of an approximate search that are among the exact neighbors
+	private long recallTotal = 0;	// exact neighbors of the checked queries
+	private long retained = 0;		// training examples kept by a prototype reduction
+	private long trained = 0;		// training examples before the reduction
 	
 	/**
 	 * Constructor
@@ -45,10 +50,6 @@ public class Performance extends Object {
 	 * @param pr
 	 */
 	public void add( int actual, double[] pr ) {
-		if( this.prNeg == null || this.prPos == null ) {
-			this.prNeg = new ArrayList<Double>();
-			this.prPos = new ArrayList<Double>();
-		}
 		// increment values
 		this.n++;
 		// get the best prediction out of pr[]
@@ -56,10 +57,10 @@ public class Performance extends Object {
 		if( this.c == 2 ) {
 			// perform this only when two-class data-set is provided
 			if( predicted == 0 ) {
-				this.prPos.add( pr[ 0 ] );
+				this.prPos = append( this.prPos, this.numPos++, pr[ 0 ] );
 			}
 			else {
-				this.prNeg.add( pr[ 1 ] );
+				this.prNeg = append( this.prNeg, this.numNeg++, pr[ 1 ] );
 			}
 		}
 		this.confusionMatrix[ actual ][ predicted ]++;
@@ -90,18 +91,54 @@ public class Performance extends Object {
 		}
 		if( this.c == 2 ) {
 			// perform this only when two-class data-set is provided
-			if( this.prNeg == null || this.prPos == null ) {
-				this.prNeg = new ArrayList<Double>();
-				this.prPos = new ArrayList<Double>();
+			for(int i = 0; i < p.numNeg; i++) {
+				this.prNeg = append( this.prNeg, this.numNeg++, p.prNeg[ i ] );
+			}
+			for(int i = 0; i < p.numPos; i++) {
+				this.prPos = append( this.prPos, this.numPos++, p.prPos[ i ] );
 			}
-			this.prNeg.addAll( p.prNeg );
-			this.prPos.addAll( p.prPos );
 			double auc = p.getAUC();
 			this.aucSum += auc;
 			this.aucSumSqr += Math.pow( auc, 2 );
 		}
 
 		this.totalF1 += this.getF1( p.confusionMatrix );
+		this.recallFound += p.recallFound;
+		this.recallTotal += p.recallTotal;
+		this.retained += p.retained;
+		this.trained += p.trained;
+	}
+	/**
+	 * Records how many training examples a prototype reduction kept
+	 * @param retained - the number of examples kept
+	 * @param trained - the number of examples before the reduction
+	 */
+	public void addRetained( int retained, int trained ) {
+		this.retained += retained;
+		this.trained += trained;
+	}
+	/**
+	 * Compute and return the fraction of training examples kept by a prototype reduction
+	 * @return retained fraction, or NaN if no reduction was applied
+	 */
+	public double getRetained() {
+		return ( this.trained == 0 ) ? Double.NaN : ( (double) this.retained / (double) this.trained );
+	}
+	/**
+	 * Records how many of the exact nearest neighbors of a query an approximate search found
+	 * @param found - the number of neighbors found
+	 * @param total - the number of exact neighbors
+	 */
+	public void addRecall( int found, int total ) {
+		this.recallFound += found;
+		this.recallTotal += total;
+	}
+	/**
+	 * Compute and return the recall of the approximate neighbor search
+	 * @return recall, or NaN if no query was checked
+	 */
+	public double getRecall() {
+		return ( this.recallTotal == 0 ) ? Double.NaN : ( (double) this.recallFound / (double) this.recallTotal );
 	}
 	/**
 	 * Compute and return accuracy
@@ -132,6 +169,12 @@ public class Performance extends Object {
 			strBuilder.append("\n\t** SDAUC = ").append( this.getSDAUC() );
 		}
 		strBuilder.append("\n\t** F1 = ").append( Math.round( this.getAvgF1() * 1000.00 ) / 10.00 ).append( "%" );
+		if( this.recallTotal > 0 ) {
+			strBuilder.append("\n\t** Recall = ").append( Math.round( this.getRecall() * 1000.00 ) / 10.00 ).append( "%" );
+		}
+		if( this.trained > 0 ) {
+			strBuilder.append("\n\t** Retained = ").append( Math.round( this.getRetained() * 1000.00 ) / 10.00 ).append( "%" );
+		}
 		return strBuilder.toString();
 	}
 	/**
@@ -144,21 +187,94 @@ public class Performance extends Object {
 		return ( n < p ) ? 1.0 : ( ( n == p ) ? 0.5 : 0.0 );
 	}
 	/**
-	 * Compute and return area under the ROC curve
+	 * Compute and return area under the ROC curve. This is the Mann-Whitney statistic: the sum of
+	 * i( neg, pos ) over all pairs, computed by sorting the positive scores once and counting, for each
+	 * negative score, the positive scores above and equal to it with binary searches.
 	 * @return AUC
 	 */
 	public double getAUC() {
 		if( this.c > 2 ) {
 			return 0;
 		}
+		if( this.numNeg == 0 || this.numPos == 0 ) {
+			return 0.0;
+		}
+		double[] pos = Arrays.copyOf( this.prPos, this.numPos );
+		Arrays.sort( pos );
+		// NaN scores sort last and compare unequal to everything, so they never add to the sum
+		int numComparable = pos.length;
+		while( numComparable > 0 && Double.isNaN( pos[ numComparable - 1 ] ) ) {
+			numComparable--;
+		}
 		double auc = 0;
-		for( Double neg : this.prNeg ) {
-			for( Double pos : this.prPos ) {
-				auc += this.i( neg, pos );
+		for(int k = 0; k < this.numNeg; k++) {
+			double neg = this.prNeg[ k ];
+			if( Double.isNaN( neg ) ) {
+				continue;
 			}
+			int atLeast = firstIndex( pos, numComparable, neg, false );	// first pos >= neg
+			int above = firstIndex( pos, numComparable, neg, true );	// first pos > neg
+			auc += ( numComparable - above ) * this.i( 0, 1 ) + ( above - atLeast ) * this.i( 0, 0 );
 		}
 		// averaged AUC results if we use k-folds cross validation
-		return ( this.prNeg.isEmpty() || this.prPos.isEmpty() ) ? 0.0 : auc / ( this.prNeg.size() * this.prPos.size() );
+		return auc / ( (double) this.numNeg * this.numPos );
+	}
+	/**
+	 * Compute and return area under the ROC curve by comparing every negative score with every positive
+	 * score. This is quadratic; it is kept as a reference implementation of getAUC.
+	 * @return AUC
+	 */
+	public double getPairwiseAUC() {
+		if( this.c > 2 ) {
+			return 0;
+		}
+		if( this.numNeg == 0 || this.numPos == 0 ) {
+			return 0.0;
+		}
+		double auc = 0;
+		for(int k = 0; k < this.numNeg; k++) {
+			for(int l = 0; l < this.numPos; l++) {
+				auc += this.i( this.prNeg[ k ], this.prPos[ l ] );
+			}
+		}
+		return auc / ( (double) this.numNeg * this.numPos );
+	}
+	/**
+	 * Returns the first index in the sorted range [0, length) whose value is greater than (strict) or
+	 * greater than or equal to (not strict) x
+	 * @param values
+	 * @param length
+	 * @param x
+	 * @param strict
+	 * @return the index, or length if there is none
+	 */
+	private static int firstIndex( double[] values, int length, double x, boolean strict ) {
+		int lo = 0;
+		int hi = length;
+		while( lo < hi ) {
+			int mid = ( lo + hi ) >>> 1;
+			if( strict ? values[ mid ] > x : values[ mid ] >= x ) {
+				hi = mid;
+			}
+			else {
+				lo = mid + 1;
+			}
+		}
+		return lo;
+	}
+	/**
+	 * Stores a value at the given position of a buffer, growing the buffer if it is full
+	 * @param buffer
+	 * @param position
+	 * @param value
+	 * @return the buffer holding the value
+	 */
+	private static double[] append( double[] buffer, int position, double value ) {
+		if( position == buffer.length ) {
+			buffer = Arrays.copyOf( buffer, buffer.length * 2 );
+		}
+		buffer[ position ] = value;
+		return buffer;
 	}
 	/**
 	 * Compute and return the SD of AUC
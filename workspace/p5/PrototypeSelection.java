@@ -0,0 +1,152 @@
+import java.util.Arrays;
+
+/*
+ * PrototypeSelection.java
+ * Copyright (c) 2018 Georgetown University.  All Rights Reserved.
+ */
+
+public class PrototypeSelection {
+
+	/**
+	 * Wilson's edited nearest neighbor rule: keeps the examples whose class agrees with the vote of their
+	 * k nearest other examples, removing noise and overlap along the class boundaries
+	 * @param dataset - the scaled training set
+	 * @param k - the number of neighbors that vote
+	 * @return the positions of the kept examples, in order
+	 * @throws Exception
+	 */
+	public static int[] edit( DataSet dataset, int k ) throws Exception {
+		LinearSearch search = new LinearSearch();
+		search.build( dataset );
+		Examples examples = dataset.getExamples();
+		int classIndex = dataset.getAttributes().getClassIndex();
+		int numClasses = dataset.getAttributes().getClassAttribute().size();
+		int[] kept = new int[ examples.size() ];
+		int numKept = 0;
+		// one extra neighbor, since each example finds itself
+		int[][] neighbors = search.getTrainingNeighbors( k + 1 );
+		for(int i = 0; i < examples.size(); i++) {
+			double[] votes = new double[ numClasses ];
+			int numVotes = 0;
+			boolean self = false;
+			for(int n = 0; n < neighbors[ i ].length && numVotes < k; n++) {
+				if( neighbors[ i ][ n ] == i && !self ) {
+					self = true;
+					continue;
+				}
+				votes[ (int) examples.get( neighbors[ i ][ n ] ).getValue( classIndex ) ]++;
+				numVotes++;
+			}
+			if( numVotes == 0 || Utils.maxIndex( votes ) == (int) examples.get( i ).getValue( classIndex ) ) {
+				kept[ numKept++ ] = i;
+			}
+		}
+		return Arrays.copyOf( kept, numKept );
+	}
+	/**
+	 * Hart's condensed nearest neighbor rule: starting from the first example, repeatedly adds every example
+	 * that the 1-nearest neighbor of the kept examples misclassifies, until a full pass adds none. The kept
+	 * examples classify the whole training set correctly with 1-NN. Each example remembers its nearest kept
+	 * example, so a pass only compares it with the examples kept by the previous pass and by this one.
+	 * @param dataset - the scaled training set
+	 * @return the positions of the kept examples, in order
+	 * @throws Exception
+	 */
+	public static int[] condense( DataSet dataset ) throws Exception {
+		Examples examples = dataset.getExamples();
+		int classIndex = dataset.getAttributes().getClassIndex();
+		boolean[] isKept = new boolean[ examples.size() ];
+		int[] kept = new int[ examples.size() ];
+		int numKept = 0;
+		if( examples.isEmpty() ) {
+			return kept;
+		}
+		int[] nearest = new int[ examples.size() ];		// the nearest kept example found so far, or -1
+		double[] nearestDist = new double[ examples.size() ];
+		Arrays.fill( nearest, -1 );
+		isKept[ 0 ] = true;
+		kept[ numKept++ ] = 0;
+		// searches over the examples kept by the previous pass and the ones kept by this pass so far; both
+		// hold them in training-set order, so they break ties as IBk does
+		int previousFrom = 0;
+		LinearSearch previous = new LinearSearch();
+		previous.build( select( dataset, new int[] { 0 } ) );
+		boolean changed = true;
+		while( changed ) {
+			changed = false;
+			int currentFrom = numKept;
+			DataSet current = null;
+			LinearSearch currentSearch = null;
+			for(int i = 0; i < examples.size(); i++) {
+				if( isKept[ i ] ) {
+					continue;
+				}
+				Example example = examples.get( i );
+				offerNearest( previous, example, kept, previousFrom, i, nearest, nearestDist );
+				if( currentSearch != null ) {
+					offerNearest( currentSearch, example, kept, currentFrom, i, nearest, nearestDist );
+				}
+				if( nearest[ i ] == -1 || examples.get( nearest[ i ] ).getValue( classIndex ) != example.getValue( classIndex ) ) {
+					isKept[ i ] = true;
+					kept[ numKept++ ] = i;
+					if( currentSearch == null ) {
+						current = select( dataset, new int[] { i } );
+						currentSearch = new LinearSearch();
+						currentSearch.build( current );
+					}
+					else {
+						current.add( example );
+						currentSearch.add( example );
+					}
+					changed = true;
+				}
+			}
+			previousFrom = currentFrom;
+			previous = currentSearch;
+		}
+		Arrays.sort( kept, 0, numKept );
+		return Arrays.copyOf( kept, numKept );
+	}
+	/**
+	 * Replaces the nearest kept example of an example with the nearest one in a search if it is closer,
+	 * breaking ties by training-set position as NeighborHeap.isCloser does
+	 * @param search - a search over kept examples
+	 * @param example
+	 * @param kept - the positions of the kept examples, in the order they were kept
+	 * @param from - the position in kept of the first example of the search
+	 * @param i - the position of the example
+	 * @param nearest - the nearest kept example of each example, or -1
+	 * @param nearestDist - the distance to it
+	 * @throws Exception
+	 */
+	private static void offerNearest( LinearSearch search, Example example, int[] kept, int from, int i, int[] nearest, double[] nearestDist ) throws Exception {
+		int[] found = search.getNeighbors( example, 1 );
+		if( found.length == 0 ) {
+			return;
+		}
+		int candidate = kept[ from + found[ 0 ] ];
+		double dist = search.distance( example, search.dataset.getExamples().get( found[ 0 ] ) );
+		if( nearest[ i ] == -1 || NeighborHeap.isCloser( dist, candidate, nearestDist[ i ], nearest[ i ] ) ) {
+			nearest[ i ] = candidate;
+			nearestDist[ i ] = dist;
+		}
+	}
+	/**
+	 * Returns a data-set holding only the given examples of another. The examples are shared, but the
+	 * returned data-set does not refer to the others, so it serializes and clones at its own size.
+	 * @param dataset
+	 * @param rows - the positions of the examples to keep
+	 * @return the reduced data-set
+	 */
+	public static DataSet select( DataSet dataset, int[] rows ) {
+		DataSet reduced = new DataSet( dataset.getAttributes() );
+		reduced.name = dataset.name;
+		reduced.random = dataset.random;
+		reduced.folds = dataset.folds;
+		reduced.examples = new Examples( dataset.getAttributes() );
+		for(int i = 0; i < rows.length; i++) {
+			reduced.add( dataset.getExamples().get( rows[ i ] ) );
+		}
+		return reduced;
+	}
+}
@@ -0,0 +1,247 @@
+/*
+ * QuantizedSearch.java
+ * Copyright (c) 2018 Georgetown University.  All Rights Reserved.
+ */
+
+public class QuantizedSearch extends NeighborSearch {
+	protected static final double QUERY_RANGE = 64.0;	// how far outside [0, 1] a quantized query may fall
+	protected int bits = 8;				// bits per stored value: 8 or 16
+	protected int rerank = 4;			// candidates re-ranked exactly, as a multiple of k
+	protected int levels;				// largest quantized value; scaled values in [0, 1] map to [0, levels]
+	protected long mismatch;			// quantized distance of a nominal mismatch, levels squared
+	protected byte[] store8;			// quantized training set, row-major, when bits is 8
+	protected char[] store16;			// quantized training set, row-major, when bits is 16
+	protected int[] order;				// attribute stored in each column, numeric attributes first
+	protected int numNumeric;			// number of numeric attributes
+	protected int first = 0;			// row of the store holding the first training example
+	protected Scaler scaler = null;		// scales training examples as they are read, if the training set is unscaled
+
+	/**
+	 * Default constructor
+	 */
+	public QuantizedSearch() {
+
+	}
+	/**
+	 * Constructor
+	 * @param bits - bits per stored value: 8 or 16
+	 * @param rerank - candidates re-ranked exactly, as a multiple of k
+	 * @throws Exception
+	 */
+	public QuantizedSearch( int bits, int rerank ) throws Exception {
+		if( ( bits != 8 && bits != 16 ) || rerank <= 0 ) {
+			throw new Exception("Error: invalid quantization parameters passed-in!");
+		}
+		this.bits = bits;
+		this.rerank = rerank;
+	}
+	/**
+	 * Sets the scaler of an unscaled training set. The quantized copy is then built from the scaled values,
+	 * and the candidates are scaled as they are re-ranked, so that no scaled copy of the examples is kept.
+	 * @param scaler - the scaler, or null if the training set is already scaled
+	 */
+	public void setScaler( Scaler scaler ) {
+		this.scaler = scaler;
+	}
+	/**
+	 * Builds the quantized copy of a given scaled training set. Numeric values are stored in fixed point
+	 * with levels + 1 steps over [0, 1]; nominal codes are stored as they are. Numeric attributes come first
+	 * in each row, so the numeric part of a distance is one loop without branches.
+	 * @param dataset
+	 * @throws Exception
+	 */
+	public void build( DataSet dataset ) throws Exception {
+		super.build( dataset );
+		this.levels = ( 1 << this.bits ) - 1;
+		this.mismatch = (long) this.levels * this.levels;
+		this.order = new int[ this.numAttrs ];
+		this.numNumeric = 0;
+		for(int j = 0; j < this.numAttrs; j++) {
+			if( this.isNumeric[ j ] ) {
+				this.order[ this.numNumeric++ ] = j;
+			}
+		}
+		for(int j = 0, c = this.numNumeric; j < this.numAttrs; j++) {
+			if( !this.isNumeric[ j ] ) {
+				if( ( (NominalAttribute) dataset.getAttributes().get( j ) ).size() > this.levels + 1 ) {
+					throw new Exception("Error: nominal attribute with too many values for " + this.bits + "-bit quantization!");
+				}
+				this.order[ c++ ] = j;
+			}
+		}
+		Examples examples = dataset.getExamples();
+		int n = examples.size();
+		int d = this.numAttrs;
+		int[] row = new int[ d ];
+		this.first = 0;
+		this.store8 = ( this.bits == 8 ) ? new byte[ n * d ] : null;
+		this.store16 = ( this.bits == 16 ) ? new char[ n * d ] : null;
+		for(int i = 0; i < n; i++) {
+			this.store( examples.get( i ), row, i );
+		}
+	}
+	/**
+	 * Quantizes an example appended to the training set into the store. Removed rows at the front are
+	 * reclaimed, and the store doubles when it is full, so appending takes amortized constant time.
+	 * @param example - the appended example, scaled unless a scaler is set
+	 * @throws Exception
+	 */
+	public void add( Example example ) throws Exception {
+		int d = this.numAttrs;
+		int n = this.dataset.getExamples().size();
+		int length = ( this.bits == 8 ) ? this.store8.length : this.store16.length;
+		if( ( this.first + n ) * d > length ) {
+			// move the rows to the front, growing the store if they fill more than half of it
+			int capacity = ( n * 2 * d > length ) ? Math.max( 16, 2 * n ) * d : length;
+			if( this.bits == 8 ) {
+				byte[] moved = new byte[ capacity ];
+				System.arraycopy( this.store8, this.first * d, moved, 0, ( n - 1 ) * d );
+				this.store8 = moved;
+			}
+			else {
+				char[] moved = new char[ capacity ];
+				System.arraycopy( this.store16, this.first * d, moved, 0, ( n - 1 ) * d );
+				this.store16 = moved;
+			}
+			this.first = 0;
+		}
+		this.store( example, new int[ d ], this.first + n - 1 );
+	}
+	/**
+	 * Drops the row of the first training example
+	 */
+	public void removeFirst() {
+		this.first++;
+	}
+	/**
+	 * Quantizes an example into a row of the store; values outside [0, 1] are clamped
+	 * @param example
+	 * @param row - scratch space for the quantized values
+	 * @param r - the row of the store
+	 * @throws Exception
+	 */
+	private void store( Example example, int[] row, int r ) throws Exception {
+		int d = this.numAttrs;
+		this.quantize( this.scaled( example ), row, 0, 0.0, 1.0 );
+		for(int c = 0; c < d; c++) {
+			if( this.bits == 8 ) {
+				this.store8[ r * d + c ] = (byte) row[ c ];
+			}
+			else {
+				this.store16[ r * d + c ] = (char) row[ c ];
+			}
+		}
+	}
+	/**
+	 * Returns the training-set positions of approximately the k nearest neighbors of a scaled query, closest
+	 * first
+	 * @param query - the scaled query
+	 * @param k - the number of neighbors
+	 * @return the positions of at most k neighbors
+	 */
+	public int[] getNeighbors( Example query, int k ) throws Exception {
+		return this.getNeighbors( new Example[] { query }, k )[ 0 ];
+	}
+	/**
+	 * Returns approximately the k nearest neighbors of each of a batch of scaled queries. The quantized store
+	 * is scanned in integer arithmetic, a block of rows against all the queries at a time, for the rerank * k
+	 * best candidates of each query, which are then ranked by their exact distance.
+	 * @param queries - the scaled queries
+	 * @param k - the number of neighbors
+	 * @return the positions of at most k neighbors of each query
+	 */
+	public int[][] getNeighbors( Example[] queries, int k ) throws Exception {
+		int d = this.numAttrs;
+		int numeric = this.numNumeric;
+		int n = this.dataset.getExamples().size();
+		int[] batch = new int[ queries.length * d ];
+		NeighborHeap[] candidates = new NeighborHeap[ queries.length ];
+		for(int q = 0; q < queries.length; q++) {
+			this.quantize( queries[ q ], batch, q * d, -QUERY_RANGE, QUERY_RANGE + 1.0 );
+			candidates[ q ] = new NeighborHeap( (int) Math.min( n, (long) this.rerank * k ) );
+		}
+		for(int from = 0; from < n; from += LinearSearch.BLOCK_ROWS) {
+			int to = Math.min( n, from + LinearSearch.BLOCK_ROWS );
+			for(int q = 0; q < queries.length; q++) {
+				NeighborHeap heap = candidates[ q ];
+				int qOffset = q * d;
+				for(int i = from; i < to; i++) {
+					double bound = heap.bound();
+					long totalDist = 0;
+					int offset = ( this.first + i ) * d;
+					int c = 0;
+					if( this.store8 != null ) {
+						for(; c < numeric; c++) {
+							long diff = batch[ qOffset + c ] - ( this.store8[ offset + c ] & 0xff );
+							totalDist += diff * diff;
+						}
+						for(; c < d && totalDist <= bound; c++) {
+							totalDist += ( batch[ qOffset + c ] == ( this.store8[ offset + c ] & 0xff ) ) ? 0 : this.mismatch;
+						}
+					}
+					else {
+						for(; c < numeric; c++) {
+							long diff = batch[ qOffset + c ] - this.store16[ offset + c ];
+							totalDist += diff * diff;
+						}
+						for(; c < d && totalDist <= bound; c++) {
+							totalDist += ( batch[ qOffset + c ] == this.store16[ offset + c ] ) ? 0 : this.mismatch;
+						}
+					}
+					heap.offer( totalDist, i );
+				}
+			}
+		}
+		// re-rank the candidates by their exact distance
+		Examples examples = this.dataset.getExamples();
+		int[][] neighbors = new int[ queries.length ][];
+		for(int q = 0; q < queries.length; q++) {
+			NeighborHeap heap = new NeighborHeap( k );
+			int[] positions = candidates[ q ].getIndices();
+			for(int p = 0; p < positions.length; p++) {
+				heap.offer( this.distance( queries[ q ], this.scaled( examples.get( positions[ p ] ) ), heap.bound() ), positions[ p ] );
+			}
+			neighbors[ q ] = heap.getIndices();
+		}
+		return neighbors;
+	}
+	/**
+	 * Returns a training example scaled, if the training set is unscaled
+	 * @param example
+	 * @return the scaled example
+	 * @throws Exception
+	 */
+	private Example scaled( Example example ) throws Exception {
+		return ( this.scaler != null ) ? this.scaler.scale( example ) : example;
+	}
+	/**
+	 * Returns false, since candidates lost to rounding are never re-ranked
+	 * @return false
+	 */
+	public boolean isExact() {
+		return false;
+	}
+	/**
+	 * Quantizes the non-class values of an example. Numeric values are clamped to [min, max] first: [0, 1]
+	 * for the training set, and a wider range for queries, which may fall outside the training range but
+	 * must not overflow the integer distance.
+	 * @param example
+	 * @param buffer - receives the quantized values, in the column order of the store
+	 * @param offset - the position of the row in the buffer
+	 * @param min
+	 * @param max
+	 */
+	private void quantize( Example example, int[] buffer, int offset, double min, double max ) {
+		for(int c = 0; c < this.numAttrs; c++) {
+			double value = example.getValue( this.order[ c ] );
+			if( c < this.numNumeric ) {
+				double clamped = Math.max( min, Math.min( max, value ) );
+				// NaN is stored as 0; the exact re-rank still discards it
+				buffer[ offset + c ] = ( clamped == clamped ) ? (int) Math.round( clamped * this.levels ) : 0;
+			}
+			else {
+				buffer[ offset + c ] = (int) value;
+			}
+		}
+	}
+}
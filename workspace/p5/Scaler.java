@@ -7,17 +7,18 @@ import java.util.ArrayList;
  */
 
 public class Scaler extends Object implements Serializable {
+	protected static final double HEADROOM = 0.25;	// widen leaves this fraction of the new range past the example
 
 	private Attributes attributes;
-	private ArrayList<Double> mins;
-	private ArrayList<Double> maxs;
+	private double[] mins;
+	private double[] maxs;
 
 	/**
 	 * Default constructor
 	 */
 	public Scaler() {
-		this.mins = new ArrayList<Double>();	// set mins
-		this.maxs = new ArrayList<Double>();	// set maxs
+		this.mins = new double[ 0 ];	// set mins
+		this.maxs = new double[ 0 ];	// set maxs
 	}
 	/**
 	 * Configures this class by setting mins and maxs
@@ -31,35 +32,40 @@ public class Scaler extends Object implements Serializable {
 		// used only for training
 		this.attributes = ds.getAttributes();
 		// initialize mins and maxs
-		this.mins = new ArrayList<Double>();
-		this.maxs = new ArrayList<Double>();
-		for(int i = 0; i < ds.getExamples().get(0).size(); i++) {
-			this.mins.add(null);
-			this.maxs.add(null);
+		int numValues = ds.getExamples().get(0).size();
+		this.mins = new double[ numValues ];
+		this.maxs = new double[ numValues ];
+		for(int j = 0; j < numValues; j++) {
+			this.mins[j] = Double.POSITIVE_INFINITY;
+			this.maxs[j] = Double.NEGATIVE_INFINITY;
 		}
-		// set mins and maxs
-		for(int i = 0; i < ds.getExamples().size(); i++) {
-			for(int j  = 0; j < ds.getExamples().get(i).size(); j++) {
-				if( this.attributes.get(j) instanceof NominalAttribute ) {
-					this.mins.set(j, null);
+		// set mins and maxs, one numeric column at a time
+		for(int j = 0; j < numValues; j++) {
+			if( !( this.attributes.get(j) instanceof NumericAttribute ) ) {
+				continue;
+			}
+			double[] column = ds.getExamples().getNumericColumn(j);
+			double min = this.mins[j];
+			double max = this.maxs[j];
+			for(int i = 0; i < column.length; i++) {
+				// compare mins
+				if( min > column[i] ) {
+					// set this value as a minimum
+					min = column[i];
 				}
-				else {
-					// compare mins
-					if( this.mins.get(j) == null || this.mins.get(j) > ds.getExamples().get(i).get(j) ) {
-						// set this value as a minimum
-						this.mins.set(j, ds.getExamples().get(i).get(j));
-					}
-					// compare maxs
-					if( this.maxs.get(j) == null || this.maxs.get(j) < ds.getExamples().get(i).get(j) ) {
-						// set this value as a maximum
-						this.maxs.set(j, ds.getExamples().get(i).get(j));
-					}
+				// compare maxs
+				if( max < column[i] ) {
+					// set this value as a maximum
+					max = column[i];
 				}
 			}
+			this.mins[j] = min;
+			this.maxs[j] = max;
 		}
 	}
 	/**
-	 * Scales a given data-set and return it
+	 * Scales a given data-set and returns the scaled copy; the given data-set is not modified,
+	 * since its examples may be shared with other data-sets
 	 * @param ds
 	 * @return scaled data-set
 	 * @throws Exception
@@ -68,15 +74,19 @@ public class Scaler extends Object implements Serializable {
 		if( ds.getExamples() == null || ds.getExamples().isEmpty() ) {
 			throw new Exception("Error: invalid DataSet object passed-in!");
 		}
+		DataSet scaled = new DataSet( ds.getAttributes() );
+		scaled.name = ds.name;
+		scaled.random = ds.random;
+		scaled.folds = ds.folds;
+		scaled.examples = new Examples( ds.getAttributes() );
 		// scale numeric values in the examples
 		for(int i = 0; i < ds.getExamples().size(); i++) {
-			Example scaledEx = this.scale( ds.getExamples().get(i) );
-			ds.getExamples().set(i, scaledEx);
+			scaled.examples.add( this.scale( ds.getExamples().get(i) ) );
 		}
-		return ds;
+		return scaled;
 	}
 	/**
-	 * Scales a given example and returns it
+	 * Scales a given example and returns the scaled copy; the given example is not modified
 	 * @param example
 	 * @return scaled example
 	 * @throws Exception
@@ -85,14 +95,72 @@ public class Scaler extends Object implements Serializable {
 		if( example == null || example.isEmpty() ) {
 			throw new Exception("Error: invalid Example object passed-in!");
 		}
+		example = new Example( example );
 		for(int i = 0; i < this.attributes.size(); i++) {
 			if( this.attributes.get(i) instanceof NumericAttribute ) {
 				// scale and replace the value for numeric attribute values
-				Double min = this.mins.get(i);
-				Double max = this.maxs.get(i);
-				example.set( i, ( example.get(i) - min ) / ( max - min ) );
+				double min = this.mins[i];
+				double max = this.maxs[i];
+				example.setValue( i, ( example.getValue(i) - min ) / ( max - min ) );
+			}
+		}
+		return example;
+	}
+	/**
+	 * Checks if every numeric value of a given unscaled example lies within the configured mins and maxs
+	 * @param example
+	 * @return true if the example scales into [0, 1], false otherwise
+	 */
+	public boolean covers( Example example ) {
+		for(int i = 0; i < this.attributes.size(); i++) {
+			if( this.attributes.get(i) instanceof NumericAttribute ) {
+				double value = example.getValue(i);
+				if( value < this.mins[i] || value > this.maxs[i] ) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+	/**
+	 * Returns a copy of this scaler whose mins and maxs are widened to cover a given unscaled example; this
+	 * scaler is not modified. A bound that moves is pushed a quarter of the new range past the example, so
+	 * that values drifting in one direction widen the range a logarithmic number of times, not every time.
+	 * @param example
+	 * @return the widened scaler
+	 */
+	public Scaler widen( Example example ) {
+		Scaler widened = new Scaler();
+		widened.attributes = this.attributes;
+		widened.mins = this.mins.clone();
+		widened.maxs = this.maxs.clone();
+		for(int i = 0; i < this.attributes.size(); i++) {
+			double value = example.getValue(i);
+			if( this.attributes.get(i) instanceof NumericAttribute && !Double.isNaN( value ) ) {
+				double min = Math.min( this.mins[i], value );
+				double max = Math.max( this.maxs[i], value );
+				double headroom = HEADROOM * ( max - min );
+				widened.mins[i] = ( value < this.mins[i] ) ? min - headroom : min;
+				widened.maxs[i] = ( value > this.maxs[i] ) ? max + headroom : max;
+			}
+		}
+		return widened;
+	}
+	/**
+	 * Restores the unscaled values of an example scaled by this scaler and returns the unscaled copy
+	 * @param example
+	 * @return unscaled example
+	 */
+	public Example unscale( Example example ) {
+		example = new Example( example );
+		for(int i = 0; i < this.attributes.size(); i++) {
+			if( this.attributes.get(i) instanceof NumericAttribute ) {
+				double min = this.mins[i];
+				double max = this.maxs[i];
+				// a constant attribute scales to NaN; every one of its values was the min
+				example.setValue( i, ( max == min ) ? min : example.getValue(i) * ( max - min ) + min );
 			}
 		}
 		return example;
 	}
-}
\ No newline at end of file
+}
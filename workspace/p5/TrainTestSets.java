@@ -77,16 +77,24 @@ public class TrainTestSets implements OptionHandler{
 				(Arrays.asList(options).contains("-T") && options.length <= 2) ) {
 			throw new Exception("Invalid arguments passed!");
 		}
+		List<String> optList = Arrays.asList( options );
+		// number of threads used for parsing the examples; -threads belongs to the Evaluator's folds
+		int threads = 1;
+		if( optList.contains( "-parse-threads" ) ) {
+			threads = Integer.parseInt( options[optList.indexOf("-parse-threads") + 1] );
+			if( threads <= 0 ) {
+				throw new Exception("Error: invalid number of parse threads detected!");
+			}
+		}
 		try {
-			List<String> optList = Arrays.asList( options );
 			// load data
 			this.train = new DataSet();
 			// load training data
-			this.train.load( options[optList.indexOf("-t") + 1] );
+			this.train.loadCached( options[optList.indexOf("-t") + 1], threads );
 			if( optList.contains( "-T" ) ) {
 				this.test = new DataSet();
 				// load testing data
-				this.test.load( options[optList.indexOf("-T") + 1] );
+				this.test.loadCached( options[optList.indexOf("-T") + 1], threads );
 			}
 		}
 		catch(Exception e) {
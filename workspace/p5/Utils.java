@@ -97,10 +97,10 @@ public class Utils {
 		int counter = 0;
 		for(int j = 0; j < encodedAttrs.size() - 1; j++) {
 			if( attributes.get( j ) instanceof NumericAttribute ) {
-				x[ counter++ ] = example.get( j );
+				x[ counter++ ] = example.getValue( j );
 			}
 			else {
-				int attrIdx = example.get( j ).intValue();
+				int attrIdx = (int) example.getValue( j );
 				for(int k = 0; k < encodedAttrs.get( j ).get( attrIdx ).length; k++) {
 					Double attrVal = encodedAttrs.get( j ).get( attrIdx )[ k ];
 					x[ counter++ ] = attrVal;
@@ -0,0 +1,207 @@
+import java.util.Arrays;
+
+/*
+ * VPTree.java
+ * Copyright (c) 2018 Georgetown University.  All Rights Reserved.
+ */
+
+public class VPTree extends NeighborSearch {
+	protected static final int LEAF_SIZE = 8;		// maximum number of examples in a leaf
+	protected static final double SLACK = 1e-9;	// tolerance for rounding in the square roots when pruning
+
+	protected Example[] points;		// the training examples when the tree was built, which removals keep
+	protected int[] perm;			// training-set positions when the tree was built, grouped by node
+	// nodes are stored in parallel arrays; a node with vantage == -1 is a leaf over perm[lo, hi)
+	protected int[] lo;
+	protected int[] hi;
+	protected int[] vantage;		// training-set position of the vantage point when the tree was built
+	protected double[] radius;		// median distance from the vantage point to the rest of the node
+	protected int[] inner;			// child holding the examples within the radius
+	protected int[] outer;			// child holding the examples outside the radius
+	protected int numNodes = 0;
+
+	/**
+	 * Default constructor
+	 */
+	public VPTree() {
+
+	}
+	/**
+	 * Builds the tree over a given scaled training set. The square root of IBk's squared distance is a
+	 * metric, since it is the Euclidean distance after one-hot encoding the nominal attributes, so the
+	 * triangle inequality bounds every subtree.
+	 * @param dataset
+	 * @throws Exception
+	 */
+	public void build( DataSet dataset ) throws Exception {
+		super.build( dataset );
+		int n = dataset.getExamples().size();
+		this.points = dataset.getExamples().toArray( new Example[ n ] );
+		this.perm = new int[ n ];
+		for(int i = 0; i < n; i++) {
+			this.perm[ i ] = i;
+		}
+		int capacity = 2 * ( n / LEAF_SIZE + 1 ) + 1;
+		this.lo = new int[ capacity ];
+		this.hi = new int[ capacity ];
+		this.vantage = new int[ capacity ];
+		this.radius = new double[ capacity ];
+		this.inner = new int[ capacity ];
+		this.outer = new int[ capacity ];
+		this.numNodes = 0;
+		this.buildNode( 0, n, new double[ n ] );
+	}
+	/**
+	 * Returns the training-set positions of the k nearest neighbors of a scaled query, closest first.
+	 * Examples appended since the tree was built are compared with the query one by one; removed ones
+	 * still serve as vantage points but are not returned.
+	 * @param query - the scaled query
+	 * @param k - the number of neighbors
+	 * @return the positions of at most k neighbors
+	 */
+	public int[] getNeighbors( Example query, int k ) throws Exception {
+		this.refresh();
+		NeighborHeap heap = new NeighborHeap( k );
+		this.search( 0, query, heap );
+		this.offerAppended( query, heap );
+		return heap.getIndices();
+	}
+	/**
+	 * Recursively splits perm[from, to) around its first example at the median distance
+	 * @param from
+	 * @param to
+	 * @param dists - scratch space for the distances to the vantage point
+	 * @return the index of the new node
+	 */
+	private int buildNode( int from, int to, double[] dists ) {
+		int node = this.numNodes++;
+		if( node >= this.lo.length ) {
+			this.grow();
+		}
+		this.lo[ node ] = from;
+		this.hi[ node ] = to;
+		this.vantage[ node ] = -1;
+		if( to - from <= LEAF_SIZE ) {
+			return node;
+		}
+		// the middle example is a cheap, deterministic choice of vantage point
+		int mid = ( from + to ) >>> 1;
+		int tmp = this.perm[ from ];
+		this.perm[ from ] = this.perm[ mid ];
+		this.perm[ mid ] = tmp;
+		Example vp = this.points[ this.perm[ from ] ];
+		for(int i = from + 1; i < to; i++) {
+			dists[ i ] = Math.sqrt( this.distance( vp, this.points[ this.perm[ i ] ] ) );
+		}
+		int median = ( from + 1 + to ) >>> 1;
+		this.select( dists, from + 1, to - 1, median );
+		this.vantage[ node ] = this.perm[ from ];
+		this.radius[ node ] = dists[ median ];
+		int in = this.buildNode( from + 1, median, dists );
+		int out = this.buildNode( median, to, dists );
+		this.inner[ node ] = in;
+		this.outer[ node ] = out;
+		return node;
+	}
+	/**
+	 * Reorders perm[from, to] and dists[from, to] together so that position nth holds their median
+	 * distance, with smaller-or-equal distances before it and larger-or-equal distances after it
+	 * @param dists
+	 * @param from
+	 * @param to
+	 * @param nth
+	 */
+	private void select( double[] dists, int from, int to, int nth ) {
+		while( from < to ) {
+			double pivot = dists[ ( from + to ) >>> 1 ];
+			int i = from;
+			int j = to;
+			while( i <= j ) {
+				while( dists[ i ] < pivot ) {
+					i++;
+				}
+				while( dists[ j ] > pivot ) {
+					j--;
+				}
+				if( i <= j ) {
+					double d = dists[ i ];
+					dists[ i ] = dists[ j ];
+					dists[ j ] = d;
+					int tmp = this.perm[ i ];
+					this.perm[ i ] = this.perm[ j ];
+					this.perm[ j ] = tmp;
+					i++;
+					j--;
+				}
+			}
+			if( nth <= j ) {
+				to = j;
+			}
+			else if( nth >= i ) {
+				from = i;
+			}
+			else {
+				break;
+			}
+		}
+	}
+	/**
+	 * Visits a node, the side of the radius that holds the query first, skipping a side when the triangle
+	 * inequality puts all of it farther than the current k-th neighbor
+	 * @param node
+	 * @param query
+	 * @param heap
+	 */
+	private void search( int node, Example query, NeighborHeap heap ) {
+		if( this.vantage[ node ] == -1 ) {
+			for(int i = this.lo[ node ]; i < this.hi[ node ]; i++) {
+				int idx = this.getPosition( this.perm[ i ] );
+				if( idx != -1 ) {
+					heap.offer( this.distance( query, this.points[ this.perm[ i ] ], heap.bound() ), idx );
+				}
+			}
+			return;
+		}
+		int vp = this.vantage[ node ];
+		double sqDist = this.distance( query, this.points[ vp ] );
+		if( this.getPosition( vp ) != -1 ) {
+			heap.offer( sqDist, this.getPosition( vp ) );
+		}
+		double dist = Math.sqrt( sqDist );
+		double mu = this.radius[ node ];
+		if( dist <= mu ) {
+			this.search( this.inner[ node ], query, heap );
+			if( mu - dist <= this.tolerance( heap ) ) {
+				this.search( this.outer[ node ], query, heap );
+			}
+		}
+		else {
+			this.search( this.outer[ node ], query, heap );
+			if( dist - mu <= this.tolerance( heap ) ) {
+				this.search( this.inner[ node ], query, heap );
+			}
+		}
+	}
+	/**
+	 * Returns the distance (not squared) of the current k-th neighbor, widened slightly so that candidates
+	 * tied with it are never pruned because of rounding
+	 * @param heap
+	 * @return the pruning radius
+	 */
+	private double tolerance( NeighborHeap heap ) {
+		double tau = Math.sqrt( heap.bound() );
+		return tau + SLACK * ( 1 + tau );
+	}
+	/**
+	 * Doubles the capacity of the node arrays
+	 */
+	private void grow() {
+		int capacity = this.lo.length * 2;
+		this.lo = Arrays.copyOf( this.lo, capacity );
+		this.hi = Arrays.copyOf( this.hi, capacity );
+		this.vantage = Arrays.copyOf( this.vantage, capacity );
+		this.radius = Arrays.copyOf( this.radius, capacity );
+		this.inner = Arrays.copyOf( this.inner, capacity );
+		this.outer = Arrays.copyOf( this.outer, capacity );
+	}
+}